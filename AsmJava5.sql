@@ -83,3 +83,94 @@ CREATE TABLE Discounts (
 ALTER TABLE Orders
 ADD Status VARCHAR(20) NOT NULL DEFAULT 'PENDING';
 
+-- Best-seller summary: quantity sold per product per day (orders not cancelled)
+CREATE TABLE ProductSales (
+    Id BIGINT IDENTITY(1,1) PRIMARY KEY,
+    ProductId INT NOT NULL,
+    SaleDate DATE NOT NULL,
+    Quantity INT NOT NULL,
+
+    CONSTRAINT UQ_ProductSales_Product_Date
+        UNIQUE (ProductId, SaleDate),
+
+    CONSTRAINT FK_ProductSales_Products
+        FOREIGN KEY (ProductId)
+        REFERENCES Products(Id)
+);
+
+-- Uploads are stored under content-addressed names: products/ab/cd/<32 hex>.jpg is 51 characters
+ALTER TABLE Products ALTER COLUMN Image NVARCHAR(100);
+ALTER TABLE Accounts ALTER COLUMN Photo NVARCHAR(100);
+
+-- Image size and placeholder, read once at upload (NULL until the startup backfill has run)
+ALTER TABLE Products ADD
+    ImageWidth INT NULL,
+    ImageHeight INT NULL,
+    ImageColor VARCHAR(7) NULL,
+    ImagePlaceholder VARCHAR(1000) NULL;
+
+ALTER TABLE Accounts ADD
+    PhotoWidth INT NULL,
+    PhotoHeight INT NULL,
+    PhotoColor VARCHAR(7) NULL,
+    PhotoPlaceholder VARCHAR(1000) NULL;
+
+-- HTTP sessions shared by every app node (Spring Session JDBC schema for SQL Server)
+CREATE TABLE SPRING_SESSION (
+	PRIMARY_ID CHAR(36) NOT NULL,
+	SESSION_ID CHAR(36) NOT NULL,
+	CREATION_TIME BIGINT NOT NULL,
+	LAST_ACCESS_TIME BIGINT NOT NULL,
+	MAX_INACTIVE_INTERVAL INT NOT NULL,
+	EXPIRY_TIME BIGINT NOT NULL,
+	PRINCIPAL_NAME VARCHAR(100),
+	CONSTRAINT SPRING_SESSION_PK PRIMARY KEY (PRIMARY_ID)
+);
+
+CREATE UNIQUE INDEX SPRING_SESSION_IX1 ON SPRING_SESSION (SESSION_ID);
+CREATE INDEX SPRING_SESSION_IX2 ON SPRING_SESSION (EXPIRY_TIME);
+CREATE INDEX SPRING_SESSION_IX3 ON SPRING_SESSION (PRINCIPAL_NAME);
+
+CREATE TABLE SPRING_SESSION_ATTRIBUTES (
+	SESSION_PRIMARY_ID CHAR(36) NOT NULL,
+	ATTRIBUTE_NAME VARCHAR(200) NOT NULL,
+	ATTRIBUTE_BYTES IMAGE NOT NULL,
+	CONSTRAINT SPRING_SESSION_ATTRIBUTES_PK PRIMARY KEY (SESSION_PRIMARY_ID, ATTRIBUTE_NAME),
+	CONSTRAINT SPRING_SESSION_ATTRIBUTES_FK FOREIGN KEY (SESSION_PRIMARY_ID) REFERENCES SPRING_SESSION(PRIMARY_ID) ON DELETE CASCADE
+);
+
+-- Carts of logged-in customers, kept across sessions and devices (written behind by CartStore)
+CREATE TABLE Carts (
+    Username NVARCHAR(50) PRIMARY KEY,
+    UpdatedAt DATETIME2 NOT NULL,
+
+    CONSTRAINT FK_Carts_Accounts
+        FOREIGN KEY (Username)
+        REFERENCES Accounts(Username)
+        ON DELETE CASCADE
+);
+
+CREATE TABLE CartItems (
+    Username NVARCHAR(50) NOT NULL,
+    Position INT NOT NULL,
+    ProductId INT NOT NULL,
+    Quantity INT NOT NULL,
+    Price FLOAT NOT NULL,
+
+    CONSTRAINT PK_CartItems
+        PRIMARY KEY (Username, Position),
+
+    CONSTRAINT FK_CartItems_Carts
+        FOREIGN KEY (Username)
+        REFERENCES Carts(Username)
+        ON DELETE CASCADE,
+
+    -- A deleted product simply leaves the saved carts
+    CONSTRAINT FK_CartItems_Products
+        FOREIGN KEY (ProductId)
+        REFERENCES Products(Id)
+        ON DELETE CASCADE
+);
+
+-- Product name folded for keyword filters (lower case, no diacritics); NULL until the startup backfill has run
+ALTER TABLE Products ADD SearchName NVARCHAR(50) NULL;
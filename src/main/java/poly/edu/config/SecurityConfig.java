@@ -1,5 +1,7 @@
  package poly.edu.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -8,34 +10,66 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.crypto.password.NoOpPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
 
+import jakarta.servlet.http.HttpSession;
+import poly.edu.models.cart.Cart;
+import poly.edu.models.services.CartStore;
 import poly.edu.models.services.CustomerDetailServices;
+import poly.edu.models.services.OrderServices;
 
 @Configuration
 public class SecurityConfig {
 
+	private static final Logger log = LoggerFactory.getLogger(SecurityConfig.class);
+
 	@Bean
 	public PasswordEncoder passwordEncoder() {
 		return NoOpPasswordEncoder.getInstance(); // ⚠️ plain text
 	}
 
 	@Bean
-	public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+	public SecurityFilterChain filterChain(HttpSecurity http, CartStore cartStore, OrderServices orderServices) throws Exception {
 
 		http.csrf().disable()
 				.authorizeHttpRequests(auth -> auth
 						.requestMatchers("/login", "/register", "/products/**", "/about", "/contact", "/home", "/",
-								"/cart/**", "/images/**", "/css/**", "/js/**")
+								"/cart/**", "/images/**", "/css/**", "/js/**", "/api/products/**")
 						.permitAll().requestMatchers("/checkout/**", "/payment/**").authenticated()
 						.requestMatchers("/dashboard/**").hasRole("ADMIN").anyRequest().authenticated())
 				.formLogin(login -> login.loginPage("/login").loginProcessingUrl("/login")
-						.defaultSuccessUrl("/home", true).failureUrl("/login?error").permitAll())
+						.successHandler(loginSuccessHandler(cartStore, orderServices)).failureUrl("/login?error").permitAll())
 				.logout(logout -> logout.logoutSuccessUrl("/login?logout") // send param for alert
 				);
 
 		return http.build();
 	}
 
+	// Always to /home, with the saved cart and the one filled before logging in merged at today's
+	// prices; the cart page tells the customer when one has changed
+	private static AuthenticationSuccessHandler loginSuccessHandler(CartStore cartStore,
+			OrderServices orderServices) {
+		SimpleUrlAuthenticationSuccessHandler home = new SimpleUrlAuthenticationSuccessHandler("/home");
+		home.setAlwaysUseDefaultTargetUrl(true);
+		return (request, response, authentication) -> {
+			HttpSession session = request.getSession();
+			try {
+				Cart cart = cartStore.merge(authentication.getName(), (Cart) session.getAttribute("cart"));
+				if (!cart.isEmpty()) {
+					if (orderServices.reprice(cart)) {
+						session.setAttribute("priceChanged", true);
+					}
+					session.setAttribute("cart", cart);
+				}
+			} catch (RuntimeException e) {
+				// The session cart stays as it is
+				log.warn("Cannot restore the cart of {}", authentication.getName(), e);
+			}
+			home.onAuthenticationSuccess(request, response, authentication);
+		};
+	}
+
 	@Bean
 	public AuthenticationManager authenticationManager(HttpSecurity http, CustomerDetailServices userDetailServices,
 			PasswordEncoder passwordEncoder) throws Exception {
@@ -0,0 +1,105 @@
+package poly.edu.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.core.serializer.support.SerializationFailedException;
+
+import poly.edu.models.cart.Cart;
+
+/**
+ * Turns a session attribute into the bytes stored in SPRING_SESSION_ATTRIBUTES,
+ * and back.
+ *
+ * The cart, written on every change, has a format of its own: the number of
+ * lines, then product id, quantity and price of each line, 16 bytes a line.
+ * Anything else (security context, flash messages, dashboard filters) goes
+ * through Java serialization, deflated when it is large enough for the class
+ * descriptors to compress well.
+ */
+class SessionAttributeCodec {
+
+	private static final byte JAVA = 0;
+	private static final byte DEFLATED = 1;
+	private static final byte CART = 2;
+
+	// Smaller Java-serialized values are stored as they are
+	private static final int DEFLATE_ABOVE = 256;
+
+	private final DefaultSerializer serializer = new DefaultSerializer();
+
+	private final DefaultDeserializer deserializer;
+
+	SessionAttributeCodec(ClassLoader classLoader) {
+		this.deserializer = new DefaultDeserializer(classLoader);
+	}
+
+	byte[] encode(Object value) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			if (value instanceof Cart cart) {
+				DataOutputStream out = new DataOutputStream(bytes);
+				out.writeByte(CART);
+				out.writeShort(cart.size());
+				for (int i = 0; i < cart.size(); i++) {
+					out.writeInt(cart.productId(i));
+					out.writeInt(cart.quantity(i));
+					out.writeDouble(cart.price(i));
+				}
+				out.flush();
+				return bytes.toByteArray();
+			}
+			byte[] serialized = serializer.serializeToByteArray(value);
+			if (serialized.length <= DEFLATE_ABOVE) {
+				bytes.write(JAVA);
+				bytes.write(serialized);
+				return bytes.toByteArray();
+			}
+			bytes.write(DEFLATED);
+			Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+			try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+				out.write(serialized);
+			} finally {
+				deflater.end();
+			}
+			return bytes.toByteArray();
+		} catch (IOException e) {
+			throw new SerializationFailedException("Cannot store session attribute of type "
+					+ value.getClass().getName(), e);
+		}
+	}
+
+	Object decode(byte[] bytes) {
+		try {
+			ByteArrayInputStream in = new ByteArrayInputStream(bytes, 1, bytes.length - 1);
+			switch (bytes[0]) {
+			case CART:
+				DataInputStream data = new DataInputStream(in);
+				Cart cart = new Cart();
+				int size = data.readShort();
+				for (int i = 0; i < size; i++) {
+					cart.add(data.readInt(), data.readInt(), data.readDouble());
+				}
+				return cart;
+			case DEFLATED:
+				try (InflaterInputStream inflated = new InflaterInputStream(in)) {
+					return deserializer.deserialize(inflated);
+				}
+			case JAVA:
+				return deserializer.deserialize(in);
+			default:
+				throw new SerializationFailedException("Unknown session attribute format " + bytes[0]);
+			}
+		} catch (IOException e) {
+			throw new SerializationFailedException("Cannot read session attribute", e);
+		}
+	}
+}
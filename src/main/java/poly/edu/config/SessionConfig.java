@@ -0,0 +1,133 @@
+package poly.edu.config;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.session.MapSession;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+
+/**
+ * HTTP sessions live in SQL Server (Spring Session JDBC, tables SPRING_SESSION
+ * and SPRING_SESSION_ATTRIBUTES), so any app node behind nginx can serve any
+ * request and no sticky sessions are needed.
+ *
+ * Per request, the repository reads the session and its attributes in one
+ * query but only decodes an attribute when it is asked for. At the end of the
+ * request it writes only the attributes that were set, in one JDBC batch.
+ * Controllers therefore set an attribute again after changing it in place (see
+ * the cart in ClientController).
+ */
+@Configuration
+public class SessionConfig implements BeanClassLoaderAware {
+
+	private ClassLoader classLoader;
+
+	@Override
+	public void setBeanClassLoader(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	// Picked up by name by the JDBC repository, in place of plain Java serialization
+	@Bean("springSessionConversionService")
+	public ConversionService springSessionConversionService() {
+		SessionAttributeCodec codec = new SessionAttributeCodec(classLoader);
+		GenericConversionService conversionService = new GenericConversionService();
+		conversionService.addConverter(Object.class, byte[].class, codec::encode);
+		conversionService.addConverter(byte[].class, Object.class, codec::decode);
+		return conversionService;
+	}
+
+	/**
+	 * session.store=memory: sessions kept in this process instead, for tests and
+	 * single-node runs. Attributes are still encoded on save and decoded on read,
+	 * so an attribute that cannot be stored in SQL Server fails here too.
+	 */
+	@Configuration
+	@ConditionalOnProperty(name = "session.store", havingValue = "memory")
+	@EnableSpringHttpSession
+	static class InMemory {
+
+		@Bean
+		public SessionRepository<MapSession> sessionRepository(
+				@Qualifier("springSessionConversionService") ConversionService conversionService,
+				@Value("${server.servlet.session.timeout:30m}") Duration timeout) {
+			return new EncodingMapSessionRepository(conversionService, timeout);
+		}
+	}
+
+	static class EncodingMapSessionRepository implements SessionRepository<MapSession> {
+
+		private static final TypeDescriptor OBJECT = TypeDescriptor.valueOf(Object.class);
+
+		private static final TypeDescriptor BYTES = TypeDescriptor.valueOf(byte[].class);
+
+		private final Map<String, MapSession> sessions = new ConcurrentHashMap<>();
+
+		private final ConversionService conversionService;
+
+		private final Duration timeout;
+
+		EncodingMapSessionRepository(ConversionService conversionService, Duration timeout) {
+			this.conversionService = conversionService;
+			this.timeout = timeout;
+		}
+
+		@Override
+		public MapSession createSession() {
+			MapSession session = new MapSession();
+			session.setMaxInactiveInterval(timeout);
+			return session;
+		}
+
+		@Override
+		public void save(MapSession session) {
+			if (!session.getId().equals(session.getOriginalId())) {
+				sessions.remove(session.getOriginalId());
+			}
+			MapSession stored = new MapSession(session.getId());
+			stored.setCreationTime(session.getCreationTime());
+			stored.setLastAccessedTime(session.getLastAccessedTime());
+			stored.setMaxInactiveInterval(session.getMaxInactiveInterval());
+			for (String name : session.getAttributeNames()) {
+				stored.setAttribute(name, conversionService.convert(session.getAttribute(name), OBJECT, BYTES));
+			}
+			sessions.put(session.getId(), stored);
+		}
+
+		@Override
+		public MapSession findById(String id) {
+			MapSession stored = sessions.get(id);
+			if (stored == null) {
+				return null;
+			}
+			if (stored.isExpired()) {
+				sessions.remove(id);
+				return null;
+			}
+			MapSession session = new MapSession(stored.getId());
+			session.setCreationTime(stored.getCreationTime());
+			session.setLastAccessedTime(stored.getLastAccessedTime());
+			session.setMaxInactiveInterval(stored.getMaxInactiveInterval());
+			for (String name : stored.getAttributeNames()) {
+				session.setAttribute(name, conversionService.convert(stored.getAttribute(name), BYTES, OBJECT));
+			}
+			return session;
+		}
+
+		@Override
+		public void deleteById(String id) {
+			sessions.remove(id);
+		}
+	}
+}
@@ -1,32 +1,73 @@
 package poly.edu.config;
 
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
-	@Value("${upload.path:uploads/products}")
-	private String uploadPath;
+	// Stylesheets and scripts, linked from the layouts with @{}
+	private static final String[] ASSETS = { "css", "js" };
+
+	// Read-only catalog pages, which never open a session
+	private static final String[] CATALOG = { "/", "/home", "/products", "/products/*" };
+
+	@Value("${catalog.cache.max-age:60s}")
+	Duration catalogMaxAge;
 
 	@Override
 	public void addResourceHandlers(ResourceHandlerRegistry registry) {
-		// Serve uploaded images from external directory
-		Path uploadDir = Paths.get(uploadPath).toAbsolutePath().normalize();
-		String uploadDirPath = uploadDir.toUri().toString();
-		
-		// Map /uploads/** to the uploads directory
-		registry.addResourceHandler("/uploads/**")
-				.addResourceLocations(uploadDirPath);
-		
-		// Map /images/products/** to serve from BOTH external uploads and static resources
-		// Spring will check locations in order: external uploads first, then static resources
-		registry.addResourceHandler("/images/products/**")
-				.addResourceLocations(uploadDirPath, "classpath:/static/images/products/");
+		// /css/custom-<md5>.css: the name changes with the content, so it can be cached
+		// forever; the .gz written next to each file at build time is sent as is
+		for (String asset : ASSETS) {
+			registry.addResourceHandler("/" + asset + "/**")
+					.addResourceLocations("classpath:/static/" + asset + "/")
+					.setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+					.resourceChain(true)
+					.addResolver(new EncodedResourceResolver())
+					.addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+		}
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		// Without a session (no cart, not logged in) a catalog page is the same for every
+		// visitor, so a reverse proxy may share it. Spring Security leaves an explicit
+		// Cache-Control alone and keeps no-store on every other response
+		String cacheControl = CacheControl.maxAge(catalogMaxAge).cachePublic().getHeaderValue();
+		registry.addInterceptor(new HandlerInterceptor() {
+			@Override
+			public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+					ModelAndView modelAndView) {
+				if (request.getSession(false) == null) {
+					response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+					// The session cookie marks a visitor whose page differs
+					response.addHeader(HttpHeaders.VARY, HttpHeaders.COOKIE);
+				}
+			}
+		}).addPathPatterns(CATALOG);
+	}
+
+	// Rewrites @{/css/custom.css} to the fingerprinted URL in every template
+	@Bean
+	public ResourceUrlEncodingFilter resourceUrlEncodingFilter() {
+		return new ResourceUrlEncodingFilter();
 	}
 }
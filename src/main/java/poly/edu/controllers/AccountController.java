@@ -16,9 +16,12 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import poly.edu.models.entities.Account;
+import poly.edu.models.projections.AccountRow;
 import poly.edu.models.services.AccountServices;
+import poly.edu.models.services.ImageVariants;
 import poly.edu.utils.ImageUtil;
-import poly.edu.utils.PaginationUtil;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 
 @Controller
 @RequestMapping("/dashboard")
@@ -27,30 +30,26 @@ public class AccountController {
 	@Autowired
 	private AccountServices accountServices;
 
+	@Autowired
+	private ImageVariants imageVariants;
+
 	@ModelAttribute("account")
 	public Account initAccount() {
 		return new Account();
 	}
 
-	@ModelAttribute("accounts")
-	public List<Account> getAccounts() {
-		return accountServices.findAll();
-	}
-
 	@GetMapping("/account")
 	public String show(Model model, @RequestParam(required = false) String keyword,
 			@RequestParam(required = false) Boolean admin, @RequestParam(required = false) Boolean activated,
-			@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "5") int size) {
-		List<Account> filtered = accountServices.filter(keyword, activated, admin);
-		List<Account> accounts = PaginationUtil.paginate(filtered, page, size);
-		int pages = PaginationUtil.getTotalPages(filtered, size);
+			@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "5") int size) {
+		CursorPage<AccountRow> result = accountServices.scrollRows(keyword, activated, admin, Cursor.decode(cursor), size);
 
 		model.addAttribute("keyword", keyword);
 		model.addAttribute("activated", activated);
 		model.addAttribute("admin", admin);
-		model.addAttribute("pages", pages);
-		model.addAttribute("page", page);
-		model.addAttribute("accounts", accounts);
+		model.addAttribute("nextCursor", result.next());
+		model.addAttribute("prevCursor", result.previous());
+		model.addAttribute("accounts", result.content());
 		model.addAttribute("currentPage", "account");
 
 		return "account-dashboard";
@@ -80,9 +79,12 @@ public class AccountController {
 		if (!photoFile.isEmpty()) {
 			String fileName = ImageUtil.save(photoFile);
 			account.setPhoto(fileName);
+			account.setPhotoInfo(imageVariants.describe(fileName));
+			imageVariants.generate(fileName, ImageVariants.ACCOUNT);
 		} else if (existingAccount != null && existingAccount.getPhoto() != null) {
 			// Keep existing photo if no new photo uploaded
 			account.setPhoto(existingAccount.getPhoto());
+			account.setPhotoInfo(existingAccount.getPhotoInfo());
 		}
 
 		try {
@@ -111,8 +113,7 @@ public class AccountController {
 	public String delete(RedirectAttributes redirect, @PathVariable("username") String username) {
 
 		try {
-			Account deleted = accountServices.delete(username);
-			ImageUtil.delete(deleted.getPhoto());
+			accountServices.delete(username);
 		} catch (Exception e) {
 			// TODO: handle exception
 			redirect.addFlashAttribute("message", "deleteFalse");
@@ -0,0 +1,44 @@
+package poly.edu.controllers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import poly.edu.models.services.CartStore;
+import poly.edu.models.services.CatalogCache;
+import poly.edu.models.services.ImageCache;
+
+@RestController
+@RequestMapping("/dashboard/cache")
+public class CacheStatsController {
+
+	@Autowired
+	private CatalogCache catalogCache;
+
+	@Autowired
+	private ImageCache imageCache;
+
+	@Autowired
+	private CartStore cartStore;
+
+	// GET /dashboard/cache/stats -> {"secondLevel": {"hits": .., "misses": ..}, "regions": {...}, "images": {...}, "carts": {...}}
+	@GetMapping("/stats")
+	public Map<String, Object> stats() {
+		Map<String, Object> stats = new LinkedHashMap<>(catalogCache.statistics());
+		stats.put("images", imageCache.statistics());
+		stats.put("carts", cartStore.statistics());
+		return stats;
+	}
+
+	@PostMapping("/evict")
+	public Map<String, Object> evict() {
+		catalogCache.evictAll();
+		imageCache.invalidateAll();
+		return stats();
+	}
+}
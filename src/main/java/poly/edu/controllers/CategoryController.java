@@ -15,7 +15,8 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import poly.edu.models.entities.Category;
 import poly.edu.models.services.CategoryServices;
-import poly.edu.utils.PaginationUtil;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 
 @Controller
 @RequestMapping("/dashboard")
@@ -29,22 +30,15 @@ public class CategoryController {
 		return new Category();
 	}
 
-	@ModelAttribute("categories")
-	public List<Category> getCategories() {
-		return categoryServices.findAll();
-	}
-
 	@GetMapping("/category")
 	public String show(Model model, @RequestParam(required = false) String keyword,
-			@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "5") int size) {
-		List<Category> filtered = categoryServices.filter(keyword);
-		List<Category> categories = PaginationUtil.paginate(filtered, page, size);
-		int pages = PaginationUtil.getTotalPages(filtered, size);
+			@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "5") int size) {
+		CursorPage<Category> result = categoryServices.scroll(keyword, Cursor.decode(cursor), size);
 
 		model.addAttribute("keyword", keyword);
-		model.addAttribute("pages", pages);
-		model.addAttribute("page", page);
-		model.addAttribute("categories", categories);
+		model.addAttribute("nextCursor", result.next());
+		model.addAttribute("prevCursor", result.previous());
+		model.addAttribute("categories", result.content());
 		model.addAttribute("currentPage", "category");
 
 		return "category-dashboard";
@@ -13,24 +13,31 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.SessionAttributes;
+import org.springframework.web.bind.annotation.SessionAttribute;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.thymeleaf.context.LazyContextVariable;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import poly.edu.models.cart.Cart;
+import poly.edu.models.cart.CartLine;
 import poly.edu.models.entities.Account;
 import poly.edu.models.entities.Category;
-import poly.edu.models.entities.Order;
-import poly.edu.models.entities.OrderDetail;
 import poly.edu.models.entities.Product;
 import poly.edu.models.services.AccountServices;
-import poly.edu.models.services.CategoryServices;
+import poly.edu.models.services.CartStore;
+import poly.edu.models.services.CatalogSnapshot;
+import poly.edu.models.services.ImageVariants;
 import poly.edu.models.services.OrderServices;
+import poly.edu.models.services.ProductRecommender;
 import poly.edu.models.services.ProductServices;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 import poly.edu.utils.ImageUtil;
-import poly.edu.utils.PaginationUtil;
+import poly.edu.utils.LazyModel;
 
 @Controller
-@SessionAttributes("order")
 public class ClientController {
 
 	// PathVariable: /cart/remove/{id}
@@ -40,40 +47,86 @@ public class ClientController {
 	private ProductServices productServices;
 
 	@Autowired
-	private CategoryServices categoryServices;
+	private CatalogSnapshot catalogSnapshot;
 
 	@Autowired
 	private OrderServices orderServices;
 
+	@Autowired
+	private ProductRecommender productRecommender;
+
 	@Autowired
 	private AccountServices accountServices;
 
-	@ModelAttribute("products")
-	public List<Product> getProducts() {
-		return productServices.findAll();
-	}
+	@Autowired
+	private ImageVariants imageVariants;
 
+	@Autowired
+	private CartStore cartStore;
+
+	// Resolved only by the views that render the category list (home, products)
 	@ModelAttribute("categories")
-	public List<Category> getCategories() {
-		return categoryServices.findAll();
+	public LazyContextVariable<List<Category>> getCategories() {
+		return LazyModel.memo("categories", catalogSnapshot::findAllCategories);
 	}
 
-	@ModelAttribute("order")
-	public Order initCart() {
-		return new Order();
+	/**
+	 * The visitor's cart, created with the session by the first add: browsing the
+	 * catalog never opens a session, so crawlers cost no memory and anonymous
+	 * pages can be cached (see WebConfig). A customer whose session has no cart
+	 * gets the saved one back, at today's prices.
+	 */
+	private Cart cart(HttpServletRequest request) {
+		HttpSession session = request.getSession();
+		Cart cart = (Cart) session.getAttribute("cart");
+		if (cart == null && request.getRemoteUser() != null) {
+			cart = cartStore.find(request.getRemoteUser());
+			if (orderServices.reprice(cart)) {
+				session.setAttribute("priceChanged", true);
+			}
+		}
+		return cart == null ? new Cart() : cart;
+	}
+
+	// The lines to show, at today's prices; the cart is stored again when that changed it
+	private List<CartLine> cartLines(HttpServletRequest request, Model model, Cart cart) {
+		int size = cart.size();
+		List<CartLine> lines = orderServices.cartLines(cart);
+		boolean priceChanged = lines.stream().anyMatch(CartLine::priceChanged);
+		if (priceChanged || cart.size() != size) {
+			store(request, cart);
+		}
+		// Also set when a saved cart was repriced at login
+		HttpSession session = request.getSession(false);
+		if (session != null && session.getAttribute("priceChanged") != null) {
+			session.removeAttribute("priceChanged");
+			priceChanged = true;
+		}
+		model.addAttribute("priceChanged", priceChanged);
+		return lines;
+	}
+
+	// Set again after every change: the session store only writes attributes that are set.
+	// A customer's cart is also saved for later sessions
+	private void store(HttpServletRequest request, Cart cart) {
+		HttpSession session = request.getSession(false);
+		if (session != null) {
+			session.setAttribute("cart", cart);
+		}
+		if (request.getRemoteUser() != null) {
+			cartStore.save(request.getRemoteUser(), cart);
+		}
 	}
 
 	@GetMapping(value = { "/", "/home" })
 	public String home(Model model, @RequestParam(required = false) String keyword,
-			@RequestParam(required = false) String categoryId, @RequestParam(defaultValue = "0") int page,
+			@RequestParam(required = false) String categoryId, @RequestParam(required = false) String cursor,
 			@RequestParam(defaultValue = "4") int size) {
-		List<Product> filtered = productServices.filter(keyword, categoryId);
-		List<Product> products = PaginationUtil.paginate(filtered, page, size);
-		int pages = PaginationUtil.getTotalPages(filtered, size);
+		CursorPage<Product> result = catalogSnapshot.scroll(keyword, categoryId, null, null, Cursor.decode(cursor), size);
 
-		model.addAttribute("pages", pages);
-		model.addAttribute("page", page);
-		model.addAttribute("products", products);
+		model.addAttribute("nextCursor", result.next());
+		model.addAttribute("prevCursor", result.previous());
+		model.addAttribute("products", result.content());
 
 		return "home";
 	}
@@ -100,34 +153,38 @@ public class ClientController {
 	@GetMapping("/products")
 	public String products(Model model, @RequestParam(required = false) String keyword,
 			@RequestParam(required = false) String categoryId, @RequestParam(required = false) String sortBy,
-			@RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "8") int size) {
+			@RequestParam(required = false) String cursor, @RequestParam(defaultValue = "8") int size) {
 
-		List<Product> filtered = productServices.filterAndSort(keyword, categoryId, sortBy);
-		List<Product> products = PaginationUtil.paginate(filtered, page, size);
-		int pages = PaginationUtil.getTotalPages(filtered, size);
+		CursorPage<Product> result = catalogSnapshot.scroll(keyword, categoryId, null, sortBy, Cursor.decode(cursor),
+				size);
 
 		model.addAttribute("categoryId", categoryId);
 		model.addAttribute("keyword", keyword);
 		model.addAttribute("sortBy", sortBy);
-		model.addAttribute("pages", pages);
-		model.addAttribute("page", page);
-		model.addAttribute("products", products);
+		model.addAttribute("nextCursor", result.next());
+		model.addAttribute("prevCursor", result.previous());
+		model.addAttribute("products", result.content());
 
 		return "products";
 	}
 
 	@GetMapping("/products/{id}")
 	public String productDetail(@PathVariable Integer id, Model model) {
-		Product product = productServices.findById(id);
+		Product product = catalogSnapshot.findById(id);
 		if (product == null) {
 			return "redirect:/products";
 		}
 		model.addAttribute("product", product);
+		model.addAttribute("relatedProducts", productRecommender.related(id, 4));
 		return "product-detail";
 	}
 
 	@GetMapping("/cart/checkout")
-	public String checkout(Model model, Authentication authentication) {
+	public String checkout(Model model, @SessionAttribute(name = "cart", required = false) Cart cart,
+			Authentication authentication, HttpServletRequest request) {
+		cart = cart == null ? new Cart() : cart;
+		model.addAttribute("cartLines", cartLines(request, model, cart));
+		model.addAttribute("cart", cart);
 		// Pre-fill address with user's account address if available
 		if (authentication != null && authentication.isAuthenticated()) {
 			UserDetails user = (UserDetails) authentication.getPrincipal();
@@ -142,11 +199,13 @@ public class ClientController {
 	@PostMapping("/cart/add")
 	public String addToCart(@RequestParam Integer productId, 
 			@RequestParam Integer quantity,
-			@ModelAttribute("order") Order order, 
+			HttpServletRequest request, 
 			RedirectAttributes redirect) {
 
 		try {
-			order = orderServices.addOrderDetailToOrder(order, productId, quantity);
+			Cart cart = cart(request);
+			orderServices.addOrderDetailToOrder(cart, productId, quantity);
+			store(request, cart);
 			redirect.addFlashAttribute("message", "addSuccess");
 			redirect.addFlashAttribute("addedProductId", productId);
 		} catch (RuntimeException e) {
@@ -159,6 +218,8 @@ public class ClientController {
 				redirect.addFlashAttribute("message", "productNotFound");
 			} else if (errorMessage.contains("Invalid quantity")) {
 				redirect.addFlashAttribute("message", "invalidQuantity");
+			} else if (errorMessage.contains("Cart is full")) {
+				redirect.addFlashAttribute("message", "cartFull");
 			} else {
 				redirect.addFlashAttribute("message", "addFail");
 			}
@@ -169,10 +230,12 @@ public class ClientController {
 
 	@PostMapping("/cart/buy")
 	public String buyNow(@RequestParam Integer productId, @RequestParam Integer quantity,
-			@ModelAttribute("order") Order order, RedirectAttributes redirect) {
+			HttpServletRequest request, RedirectAttributes redirect) {
 
 		try {
-			order = orderServices.addOrderDetailToOrder(order, productId, quantity);
+			Cart cart = cart(request);
+			orderServices.addOrderDetailToOrder(cart, productId, quantity);
+			store(request, cart);
 		} catch (RuntimeException e) {
 			String errorMessage = e.getMessage();
 			if (errorMessage.contains("not available")) {
@@ -183,6 +246,8 @@ public class ClientController {
 				redirect.addFlashAttribute("message", "productNotFound");
 			} else if (errorMessage.contains("Invalid quantity")) {
 				redirect.addFlashAttribute("message", "invalidQuantity");
+			} else if (errorMessage.contains("Cart is full")) {
+				redirect.addFlashAttribute("message", "cartFull");
 			} else {
 				redirect.addFlashAttribute("message", "addFail");
 			}
@@ -193,45 +258,59 @@ public class ClientController {
 	}
 
 	@GetMapping("/cart/remove")
-	public String removeItem(@RequestParam Integer productId, @ModelAttribute("order") Order order) {
-		order.getOrderDetails().removeIf(od -> od.getProduct().getId().equals(productId));
+	public String removeItem(Model model, @RequestParam Integer productId,
+			@SessionAttribute(name = "cart", required = false) Cart cart, HttpServletRequest request) {
+		cart = cart == null ? new Cart() : cart;
+		cart.remove(productId);
+		store(request, cart);
+		model.addAttribute("cartLines", cartLines(request, model, cart));
+		model.addAttribute("cart", cart);
 		return "checkout";
 	}
 
 	@GetMapping("/cart/clear")
-	public String clearItems(@ModelAttribute("order") Order order) {
-		order.getOrderDetails().clear(); // object store in session can't be reassigned
+	public String clearItems(Model model, @SessionAttribute(name = "cart", required = false) Cart cart,
+			HttpServletRequest request) {
+		cart = cart == null ? new Cart() : cart;
+		cart.clear();
+		store(request, cart);
+		model.addAttribute("cart", cart);
+		model.addAttribute("cartLines", List.of());
 		return "checkout";
 	}
 
 	@PostMapping("/cart/update")
 	public String updateQuantity(@RequestParam Integer productId, @RequestParam Integer quantity,
-			@ModelAttribute("order") Order order, RedirectAttributes redirect) {
+			@SessionAttribute(name = "cart", required = false) Cart cart, HttpServletRequest request,
+			RedirectAttributes redirect) {
+		if (cart == null) {
+			return "redirect:/cart/checkout"; // nothing to update
+		}
 		try {
 			// If quantity is 0 or less, remove the item
 			if (quantity <= 0) {
-				order.getOrderDetails().removeIf(od -> od.getProduct().getId().equals(productId));
+				cart.remove(productId);
+				store(request, cart);
 				redirect.addFlashAttribute("message", "quantityUpdated");
 				return "redirect:/cart/checkout";
 			}
 
-			// Find the order detail for this product
-			for (OrderDetail od : order.getOrderDetails()) {
-				if (od.getProduct().getId().equals(productId)) {
-					// Get fresh product data to check current stock
-					Product product = productServices.findById(productId);
+			// Only for a product in the cart
+			if (cart.quantityOf(productId) > 0) {
+				// Get fresh product data to check current stock
+				Product product = productServices.findById(productId);
 
-					// Check if requested quantity exceeds available stock
-					if (quantity > product.getAmount()) {
-						redirect.addFlashAttribute("message", "quantityExceeded");
-						return "redirect:/cart/checkout";
-					}
-
-					// Update quantity
-					od.setQuantity(quantity);
-					redirect.addFlashAttribute("message", "quantityUpdated");
+				// Check if requested quantity exceeds available stock
+				if (product == null || quantity > product.getAmount()) {
+					redirect.addFlashAttribute("message", "quantityExceeded");
 					return "redirect:/cart/checkout";
 				}
+
+				// Update quantity
+				cart.setQuantity(productId, quantity);
+				store(request, cart);
+				redirect.addFlashAttribute("message", "quantityUpdated");
+				return "redirect:/cart/checkout";
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -242,8 +321,9 @@ public class ClientController {
 	}
 
 	@PostMapping("/payment")
-		public String payment(Model model, @ModelAttribute("order") Order order,
-				@RequestParam String address, Authentication authentication) {
+		public String payment(Model model, @SessionAttribute(name = "cart", required = false) Cart cart,
+				@RequestParam String address, Authentication authentication, HttpServletRequest request) {
+			cart = cart == null ? new Cart() : cart;
 
 			try {
 				// Validate address
@@ -253,13 +333,13 @@ public class ClientController {
 				}
 
 				// Validate cart is not empty
-				if (order.getOrderDetails().isEmpty()) {
+				if (cart.isEmpty()) {
 					model.addAttribute("message", "emptyCart");
 					return "redirect:/cart/checkout";
 				}
 
 				// Validate stock availability
-				if (!orderServices.validateStock(order)) {
+				if (!orderServices.validateStock(cart)) {
 					model.addAttribute("message", "insufficientStock");
 					return "redirect:/cart/checkout";
 				}
@@ -271,14 +351,13 @@ public class ClientController {
 				boolean missingPhone = account.getPhone() == null || account.getPhone().trim().isEmpty();
 				boolean missingAddress = address == null || address.trim().isEmpty();
 
-				// Calculate order total
-				Double orderTotal = order.getOrderDetails().stream()
-						.mapToDouble(od -> od.getPrice() * od.getQuantity())
-						.sum();
+				// Calculate order total, once the lines are at today's prices
+				List<CartLine> lines = cartLines(request, model, cart);
+				Double orderTotal = cart.getTotal();
 
 				// Pass data to payment confirmation page
 				model.addAttribute("account", account);
-				model.addAttribute("order", order);
+				model.addAttribute("cartLines", lines);
 				model.addAttribute("deliveryAddress", address);
 				model.addAttribute("orderTotal", orderTotal);
 				model.addAttribute("missingPhone", missingPhone);
@@ -295,8 +374,10 @@ public class ClientController {
 		}
 
 		@PostMapping("/payment/confirm")
-		public String confirmPayment(RedirectAttributes redirect, @ModelAttribute("order") Order order,
-				@RequestParam String address, Authentication authentication) {
+		public String confirmPayment(RedirectAttributes redirect,
+				@SessionAttribute(name = "cart", required = false) Cart cart, @RequestParam String address,
+				Authentication authentication, HttpServletRequest request) {
+			cart = cart == null ? new Cart() : cart;
 
 			try {
 				// Validate address
@@ -306,13 +387,13 @@ public class ClientController {
 				}
 
 				// Validate cart is not empty
-				if (order.getOrderDetails().isEmpty()) {
+				if (cart.isEmpty()) {
 					redirect.addFlashAttribute("message", "emptyCart");
 					return "redirect:/cart/checkout";
 				}
 
 				// Validate stock availability
-				if (!orderServices.validateStock(order)) {
+				if (!orderServices.validateStock(cart)) {
 					redirect.addFlashAttribute("message", "insufficientStock");
 					return "redirect:/cart/checkout";
 				}
@@ -326,35 +407,28 @@ public class ClientController {
 					return "redirect:/cart/checkout";
 				}
 
-				// Create a new Order instance to avoid detached entity issue
-				Order newOrder = new Order();
-				newOrder.setAccount(account);
-				newOrder.setAddress(address.trim());
-				newOrder.setCreateDate(java.time.LocalDate.now());
-
-				// Copy order details to new order
-				for (OrderDetail od : order.getOrderDetails()) {
-					OrderDetail newOd = new OrderDetail();
-					newOd.setProduct(od.getProduct());
-					newOd.setPrice(od.getPrice());
-					newOd.setQuantity(od.getQuantity());
-					newOd.setOrder(newOrder);
-					newOrder.getOrderDetails().add(newOd);
-				}
-
-				// Save order
-				orderServices.save(newOrder);
-
-				// Update product quantities
-				for (OrderDetail od : newOrder.getOrderDetails()) {
-					Product product = od.getProduct();
-					int newAmount = product.getAmount() - od.getQuantity();
-					product.setAmount(newAmount);
-					productServices.save(product);
+				// Order and stock decrements in one transaction; the stock check above is only a
+				// quick answer, this is the one that holds when buyers race for the last units
+				try {
+					orderServices.placeOrder(account, address.trim(), cart);
+				} catch (RuntimeException e) {
+					if (e.getMessage() != null && e.getMessage().contains("Insufficient stock")) {
+						redirect.addFlashAttribute("message", "insufficientStock");
+						return "redirect:/cart/checkout";
+					}
+					if (e.getMessage() != null && e.getMessage().contains("Price changed")) {
+						// Shown again at the new prices before the customer confirms
+						orderServices.reprice(cart);
+						store(request, cart);
+						redirect.addFlashAttribute("message", "priceChanged");
+						return "redirect:/cart/checkout";
+					}
+					throw e;
 				}
 
 				// Clear cart after successful order
-				order.getOrderDetails().clear();
+				cart.clear();
+				store(request, cart);
 
 				redirect.addFlashAttribute("message", "saveTrue");
 			} catch (Exception e) {
@@ -374,12 +448,8 @@ public class ClientController {
 			Account account = accountServices.findById(user.getUsername());
 			model.addAttribute("account", account);
 
-			// Get user's orders - use the account's orders relationship
-			if (account.getOrders() != null) {
-				model.addAttribute("userOrders", account.getOrders());
-			} else {
-				model.addAttribute("userOrders", List.of());
-			}
+			// Get user's orders with their items and products in one query
+			model.addAttribute("userOrders", orderServices.findByUsername(user.getUsername()));
 		}
 		return "profile";
 	}
@@ -404,11 +474,9 @@ public class ClientController {
 			if (photoFile != null && !photoFile.isEmpty()) {
 				String fileName = ImageUtil.save(photoFile);
 				if (fileName != null) {
-					// Delete old photo if exists
-					if (account.getPhoto() != null) {
-						ImageUtil.delete(account.getPhoto());
-					}
 					account.setPhoto(fileName);
+					account.setPhotoInfo(imageVariants.describe(fileName));
+					imageVariants.generate(fileName, ImageVariants.ACCOUNT);
 				}
 			}
 
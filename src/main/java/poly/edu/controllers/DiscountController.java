@@ -11,9 +11,11 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.SessionAttribute;
 import org.springframework.web.bind.annotation.SessionAttributes;
 import org.springframework.web.bind.support.SessionStatus;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.thymeleaf.context.LazyContextVariable;
 
 import poly.edu.models.entities.Category;
 import poly.edu.models.entities.Discount;
@@ -21,13 +23,14 @@ import poly.edu.models.entities.Product;
 import poly.edu.models.services.CategoryServices;
 import poly.edu.models.services.DiscountServices;
 import poly.edu.models.services.ProductServices;
-import poly.edu.utils.PaginationUtil;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
+import poly.edu.utils.LazyModel;
 
 @Controller
 @RequestMapping("/dashboard")
-@SessionAttributes({ "discount", "product", "discountType", "active", "categoryKeyword", "discountKeyword",
-		"categoryId", "discountTable", "productTable", "discountPage", "discountSize", "discountPages", "productPage",
-		"productSize", "productPages" })
+@SessionAttributes({ "discountId", "discountProductId", "discountType", "active", "categoryKeyword", "discountKeyword",
+		"categoryId", "discountSize", "productSize" })
 public class DiscountController {
 
 	@Autowired
@@ -39,70 +42,58 @@ public class DiscountController {
 	@Autowired
 	private CategoryServices categoryServices;
 
-	@ModelAttribute("product")
-	public Product initProduct() {
-		return new Product();
-	}
-
-	@ModelAttribute("discount")
-	public Discount initDiscount() {
-		return new Discount();
-	}
-
-	@ModelAttribute("discountTable")
-	public List<Discount> getDiscounts() {
-		return discountServices.findAll();
-	}
-
-	@ModelAttribute("productTable")
-	public List<Product> getProductTable() {
-		return productServices.findAll();
-	}
-
+	// Only used when edit / choose render the dashboard directly; show() puts a page
 	@ModelAttribute("products")
-	public List<Product> getProducts() {
-		return productServices.findAll();
+	public LazyContextVariable<List<Product>> getProducts() {
+		return LazyModel.memo("products", productServices::findAll);
 	}
 
 	@ModelAttribute("categories")
-	public List<Category> getCategories() {
-		return categoryServices.findAll();
+	public LazyContextVariable<List<Category>> getCategories() {
+		return LazyModel.memo("categories", categoryServices::findAll);
 	}
 
 	@GetMapping("/discount")
 	public String show(Model model, @RequestParam(required = false) String discountKeyword,
 			@RequestParam(required = false) String discountType, @RequestParam(required = false) Boolean active,
-			@RequestParam(defaultValue = "0") int discountPage, @RequestParam(defaultValue = "5") int discountSize,
+			@RequestParam(required = false) String discountCursor, @RequestParam(defaultValue = "5") int discountSize,
 			@RequestParam(required = false) String productKeyword, @RequestParam(required = false) String categoryId,
-			@RequestParam(defaultValue = "0") int productPage, @RequestParam(defaultValue = "5") int productSize) {
+			@RequestParam(required = false) String productCursor, @RequestParam(defaultValue = "5") int productSize,
+			@SessionAttribute(name = "discountId", required = false) Integer discountId,
+			@SessionAttribute(name = "discountProductId", required = false) Integer discountProductId) {
 
-		List<Product> filteredProducts = productServices.filter(productKeyword, categoryId);
-		List<Product> products = PaginationUtil.paginate(filteredProducts, productPage, productSize);
-		int productPages = PaginationUtil.getTotalPages(filteredProducts, productSize);
+		CursorPage<Product> products = productServices.scroll(productKeyword, categoryId, null, null,
+				Cursor.decode(productCursor), productSize);
 
-		List<Discount> filteredDiscounts = discountServices.filter(discountKeyword, discountType, active);
-		List<Discount> discounts = PaginationUtil.paginate(filteredDiscounts, discountPage, discountSize);
-		int discountPages = PaginationUtil.getTotalPages(filteredDiscounts, discountSize);
+		CursorPage<Discount> discounts = discountServices.scroll(discountKeyword, discountType, active,
+				Cursor.decode(discountCursor), discountSize);
 
 		model.addAttribute("discountKeyword", discountKeyword);
 		model.addAttribute("discountType", discountType);
 		model.addAttribute("active", active);
-		model.addAttribute("discountPage", discountPage);
 		model.addAttribute("discountSize", discountSize);
-		model.addAttribute("discountPages", discountPages);
-		model.addAttribute("discounts", discounts);
+		model.addAttribute("discountNext", discounts.next());
+		model.addAttribute("discountPrev", discounts.previous());
+		model.addAttribute("discounts", discounts.content());
 
 		model.addAttribute("productKeyword", productKeyword);
 		model.addAttribute("categoryId", categoryId);
-		model.addAttribute("productPage", productPage);
 		model.addAttribute("productSize", productSize);
-		model.addAttribute("productPages", productPages);
-		model.addAttribute("products", products);
+		model.addAttribute("productNext", products.next());
+		model.addAttribute("productPrev", products.previous());
+		model.addAttribute("products", products.content());
 		model.addAttribute("currentPage", "discount");
 
+		// Only the ids of the discount being edited and the chosen product stay in the session
+		Discount discount = discountId == null ? null : discountServices.findById(discountId);
+		Product product = discountProductId == null ? null : productServices.findById(discountProductId);
+		model.addAttribute("discount", discount == null ? new Discount() : discount);
+		model.addAttribute("product", product == null ? new Product() : product);
+
 		return "discount-dashboard";
 	}
 
+	// Bound onto a new Discount: the form posts every field, its hidden id included
 	@PostMapping("/discount/save")
 	public String save(RedirectAttributes redirect, Model model, @ModelAttribute("discount") Discount discount,
 			@RequestParam(required = false) Integer productId) {
@@ -111,7 +102,8 @@ public class DiscountController {
 			Product product = productServices.findById(productId);
 			discount.setProduct(product);
 			discountServices.save(discount);
-			model.addAttribute("discountTable", List.of(discount));
+			model.addAttribute("discountId", discount.getId());
+			model.addAttribute("discountProductId", productId);
 			model.addAttribute("active", "");
 			model.addAttribute("discountType", "");
 			model.addAttribute("active", "");
@@ -148,6 +140,8 @@ public class DiscountController {
 		Discount discount = discountServices.findById(id);
 		model.addAttribute("discount", discount);
 		model.addAttribute("product", discount.getProduct());
+		model.addAttribute("discountId", id);
+		model.addAttribute("discountProductId", discount.getProduct().getId());
 		return "discount-dashboard";
 	}
 
@@ -156,6 +150,7 @@ public class DiscountController {
 
 		Product product = productServices.findById(productId);
 		model.addAttribute("product", product);
+		model.addAttribute("discountProductId", productId);
 		return "discount-dashboard";
 	}
 
@@ -0,0 +1,48 @@
+package poly.edu.controllers;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import jakarta.servlet.http.HttpServletResponse;
+import poly.edu.models.services.DataExporter;
+
+@Controller
+@RequestMapping("/dashboard/export")
+public class ExportController {
+
+	@Autowired
+	private DataExporter dataExporter;
+
+	// GET /dashboard/export/orders?format=csv -> orders-2024-02-14.csv, streamed
+	@GetMapping("/{type}")
+	public void export(@PathVariable("type") String type, @RequestParam(defaultValue = "csv") String format,
+			HttpServletResponse response) throws IOException {
+		if (!dataExporter.supports(type) || !(format.equals("csv") || format.equals("json"))) {
+			response.sendError(HttpStatus.NOT_FOUND.value());
+			return;
+		}
+		if (!dataExporter.tryAcquire()) {
+			response.setHeader(HttpHeaders.RETRY_AFTER, "30");
+			response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Too many exports are running");
+			return;
+		}
+		try {
+			String fileName = type + "-" + LocalDate.now() + "." + format;
+			response.setContentType(format.equals("json") ? "application/json" : "text/csv");
+			response.setCharacterEncoding("UTF-8");
+			response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+			dataExporter.export(type, format, response.getOutputStream());
+		} finally {
+			dataExporter.release();
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package poly.edu.controllers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.util.UriUtils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import poly.edu.models.services.ImageCache;
+import poly.edu.models.services.ImageCache.Image;
+import poly.edu.models.services.ImageManifest;
+import poly.edu.models.services.ImageManifest.Entry;
+
+/**
+ * Serves product photos, avatars and their variants: /images/products/** (uploads,
+ * then bundled photos) and /uploads/** (uploads only).
+ *
+ * Paths resolve through the {@link ImageCache} and {@link ImageManifest}.
+ * Conditional requests are answered from the strong ETag, single byte ranges
+ * are honoured, and bodies are copied from memory when the image is cached, or
+ * go to the connector with Tomcat's sendfile when available, or
+ * FileChannel.transferTo otherwise.
+ */
+@Controller
+public class ImageController {
+
+	// Tomcat request attributes for sendfile (see org.apache.catalina.Globals)
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	// Below this size a plain copy is cheaper than handing the file to the poller
+	private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+	private static final String IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable()
+			.getHeaderValue();
+
+	// Bundled photos and uploads from before content addressing keep their name
+	// across releases: cached for a week, not forever
+	private static final String LEGACY = CacheControl.maxAge(7, TimeUnit.DAYS).cachePublic().getHeaderValue();
+
+	@Autowired
+	private ImageCache imageCache;
+
+	@GetMapping({ "/images/products/**", "/uploads/**" })
+	public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		String path = UriUtils.decode(request.getRequestURI().substring(request.getContextPath().length()),
+				StandardCharsets.UTF_8);
+		boolean uploadsOnly = path.startsWith("/uploads/");
+		String name = "products/" + path.substring(uploadsOnly ? "/uploads/".length() : "/images/products/".length());
+
+		Image image = imageCache.find(name);
+		if (image == null || (uploadsOnly && !image.entry().uploaded())) {
+			response.sendError(HttpStatus.NOT_FOUND.value());
+			return;
+		}
+		Entry entry = image.entry();
+
+		response.setHeader(HttpHeaders.ETAG, entry.etag());
+		response.setDateHeader(HttpHeaders.LAST_MODIFIED, entry.lastModified());
+		response.setHeader(HttpHeaders.CACHE_CONTROL, entry.immutable() ? IMMUTABLE : LEGACY);
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+		if (notModified(request, entry)) {
+			response.setStatus(HttpStatus.NOT_MODIFIED.value());
+			return;
+		}
+
+		long length = entry.length();
+		long start = 0;
+		long end = length - 1;
+		long[] range = range(request, entry);
+		if (range != null) {
+			if (range.length == 0) {
+				response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+				response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+				return;
+			}
+			start = range[0];
+			end = range[1];
+			response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+			response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+		}
+
+		response.setContentType(entry.contentType().toString());
+		response.setContentLengthLong(end - start + 1);
+		if ("HEAD".equals(request.getMethod()) || length == 0) {
+			return;
+		}
+
+		if (image.bytes() != null) {
+			ByteBuffer body = image.bytes().duplicate().limit((int) end + 1).position((int) start);
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			while (body.hasRemaining()) {
+				out.write(body);
+			}
+			return;
+		}
+
+		if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)) && end - start + 1 >= SENDFILE_MIN_SIZE) {
+			// Tomcat writes the file straight from the page cache once we return
+			request.setAttribute(SENDFILE_FILENAME, entry.file().toAbsolutePath().toString());
+			request.setAttribute(SENDFILE_START, start);
+			request.setAttribute(SENDFILE_END, end + 1);
+			return;
+		}
+
+		try (FileChannel file = FileChannel.open(entry.file(), StandardOpenOption.READ)) {
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			long position = start;
+			while (position <= end) {
+				long sent = file.transferTo(position, end + 1 - position, out);
+				if (sent <= 0) {
+					break; // file shrank underneath us
+				}
+				position += sent;
+			}
+		}
+	}
+
+	/**
+	 * If-None-Match, or If-Modified-Since when no entity tag was sent
+	 */
+	static boolean notModified(HttpServletRequest request, Entry entry) {
+		String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+		if (ifNoneMatch != null) {
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/")) {
+					tag = tag.substring(2); // weak comparison, RFC 9110 13.1.2
+				}
+				if (tag.equals("*") || tag.equals(entry.etag())) {
+					return true;
+				}
+			}
+			return false;
+		}
+		try {
+			long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+			return ifModifiedSince >= 0 && entry.lastModified() / 1000 <= ifModifiedSince / 1000;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Parse a single "bytes=" range
+	 *
+	 * @return {first, last} inclusive, an empty array when unsatisfiable, or null
+	 *         to send the whole file (no Range, several ranges, stale If-Range,
+	 *         malformed header)
+	 */
+	static long[] range(HttpServletRequest request, Entry entry) {
+		String header = request.getHeader(HttpHeaders.RANGE);
+		if (header == null || !header.startsWith("bytes=") || header.contains(",")) {
+			return null;
+		}
+		String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+		if (ifRange != null && !ifRange.equals(entry.etag())) {
+			return null; // the client's partial copy is of another version
+		}
+		String spec = header.substring("bytes=".length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		long length = entry.length();
+		try {
+			String first = spec.substring(0, dash).trim();
+			String last = spec.substring(dash + 1).trim();
+			if (first.isEmpty()) {
+				// Suffix range: the last n bytes
+				long suffix = Long.parseLong(last);
+				if (suffix <= 0 || length == 0) {
+					return new long[0];
+				}
+				return new long[] { Math.max(0, length - suffix), length - 1 };
+			}
+			long start = Long.parseLong(first);
+			long end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+			if (start > end && !last.isEmpty() && Long.parseLong(last) < start) {
+				return null; // last < first: syntactically invalid, ignored
+			}
+			if (start >= length) {
+				return new long[0];
+			}
+			return new long[] { start, end };
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+}
@@ -2,13 +2,11 @@ package poly.edu.controllers;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -16,8 +14,11 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import poly.edu.models.entities.Order;
+import poly.edu.models.projections.OrderRow;
 import poly.edu.models.services.OrderServices;
 import poly.edu.utils.CurrencyUtil;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 
 @Controller
 @RequestMapping("/dashboard")
@@ -29,17 +30,14 @@ public class OrderController {
 	@Autowired
 	private CurrencyUtil currencyUtil;
 
-	@ModelAttribute("orders")
-	public List<Order> getOrders() {
-		return orderServices.findAllDescById();
-	}
-
 	@RequestMapping(value = { "", "/order" })
 	public String show(Model model,
 			@RequestParam(required = false) String keyword,
 			@RequestParam(required = false) String status,
 			@RequestParam(required = false) String fromDate,
-			@RequestParam(required = false) String toDate) {
+			@RequestParam(required = false) String toDate,
+			@RequestParam(required = false) String cursor,
+			@RequestParam(defaultValue = "10") int size) {
 		
 		// Parse dates
 		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
@@ -62,24 +60,13 @@ public class OrderController {
 			}
 		}
 		
-		final LocalDate from = fromDateParsed;
-		final LocalDate to = toDateParsed;
-		
-		// Get all orders
-		List<Order> allOrders = orderServices.findAllDescById();
-		
-		// Filter orders
-		List<Order> filtered = allOrders.stream()
-			.filter(o -> keyword == null || keyword.isEmpty() || 
-				o.getAccount().getFullname().toLowerCase().contains(keyword.toLowerCase()) ||
-				o.getAccount().getUsername().toLowerCase().contains(keyword.toLowerCase()) ||
-				String.valueOf(o.getId()).contains(keyword))
-			.filter(o -> status == null || status.isEmpty() || o.getStatus().equals(status))
-			.filter(o -> from == null || !o.getCreateDate().isBefore(from))
-			.filter(o -> to == null || !o.getCreateDate().isAfter(to))
-			.toList();
+		// Filtered and paged in the database, read as plain rows
+		CursorPage<OrderRow> result = orderServices.scrollRows(keyword, status, fromDateParsed, toDateParsed,
+				Cursor.decode(cursor), size);
 		
-		model.addAttribute("orders", filtered);
+		model.addAttribute("orders", result.content());
+		model.addAttribute("nextCursor", result.next());
+		model.addAttribute("prevCursor", result.previous());
 		model.addAttribute("keyword", keyword);
 		model.addAttribute("status", status);
 		model.addAttribute("fromDate", fromDate);
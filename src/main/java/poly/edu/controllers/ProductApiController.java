@@ -0,0 +1,27 @@
+package poly.edu.controllers;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import poly.edu.models.services.ProductSuggestIndex;
+import poly.edu.models.services.ProductSuggestIndex.Suggestion;
+
+@RestController
+@RequestMapping("/api/products")
+public class ProductApiController {
+
+	@Autowired
+	private ProductSuggestIndex productSuggestIndex;
+
+	// GET /api/products/suggest?q=hoa%20c -> [{"label": "Hoa cưới", "url": "/products/5", ...}]
+	@GetMapping("/suggest")
+	public List<Suggestion> suggest(@RequestParam(defaultValue = "") String q,
+			@RequestParam(defaultValue = "8") int limit) {
+		return productSuggestIndex.suggest(q, limit);
+	}
+}
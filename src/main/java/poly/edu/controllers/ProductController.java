@@ -2,6 +2,7 @@ package poly.edu.controllers;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -14,13 +15,21 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.thymeleaf.context.LazyContextVariable;
 
 import poly.edu.models.entities.Category;
 import poly.edu.models.entities.Product;
+import poly.edu.models.projections.ProductRow;
 import poly.edu.models.services.CategoryServices;
+import poly.edu.models.services.ImageVariants;
+import poly.edu.models.services.ProductImporter;
+import poly.edu.models.services.ProductImporter.ImportJob;
 import poly.edu.models.services.ProductServices;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 import poly.edu.utils.ImageUtil;
-import poly.edu.utils.PaginationUtil;
+import poly.edu.utils.LazyModel;
+import poly.edu.utils.ValidationUtil;
 
 @Controller
 @RequestMapping("/dashboard")
@@ -32,37 +41,35 @@ public class ProductController {
 	@Autowired
 	private CategoryServices categoryServices;
 
+	@Autowired
+	private ProductImporter productImporter;
+
+	@Autowired
+	private ImageVariants imageVariants;
+
 	@ModelAttribute("product")
 	public Product initProduct() {
 		return new Product();
 	}
 
+	// The product list itself is loaded page by page in show()
 	@ModelAttribute("categories")
-	public List<Category> getCategories() {
-
-		return categoryServices.findAll();
-	}
-
-	@ModelAttribute("products")
-	public List<Product> getProducts() {
-
-		return productServices.findAllDescById();
+	public LazyContextVariable<List<Category>> getCategories() {
+		return LazyModel.memo("categories", categoryServices::findAll);
 	}
 
 	@GetMapping("/product")
 	public String show(Model model, @RequestParam(required = false) String keyword,
-			@RequestParam(required = false) String categoryId, @RequestParam(defaultValue = "0") int page,
+			@RequestParam(required = false) String categoryId, @RequestParam(required = false) String cursor,
 			@RequestParam(defaultValue = "5") int size) {
 
-		List<Product> filtered = productServices.filter(keyword, categoryId);
-		List<Product> products = PaginationUtil.paginate(filtered, page, size);
-		int pages = PaginationUtil.getTotalPages(filtered, size);
+		CursorPage<ProductRow> result = productServices.scrollRows(keyword, categoryId, Cursor.decode(cursor), size);
 
 		model.addAttribute("categoryId", categoryId);
 		model.addAttribute("keyword", keyword);
-		model.addAttribute("pages", pages);
-		model.addAttribute("page", page);
-		model.addAttribute("products", products);
+		model.addAttribute("nextCursor", result.next());
+		model.addAttribute("prevCursor", result.previous());
+		model.addAttribute("products", result.content());
 		model.addAttribute("currentPage", "product");
 
 		return "product-dashboard";
@@ -75,39 +82,21 @@ public class ProductController {
 
 		try {
 			// Validate required fields
-			if (product.getName() == null || product.getName().isBlank()) {
-				redirect.addFlashAttribute("message", "saveFail");
-				redirect.addFlashAttribute("errorDetails", "Product name is required");
-				redirect.addFlashAttribute("product", product);
-				return "redirect:/dashboard/product";
-			}
-			
-			if (product.getPrice() == null || product.getPrice() <= 0) {
-				redirect.addFlashAttribute("message", "saveFail");
-				redirect.addFlashAttribute("errorDetails", "Product price must be greater than 0");
-				redirect.addFlashAttribute("product", product);
-				return "redirect:/dashboard/product";
-			}
-			
-			if (product.getAmount() == null || product.getAmount() <= 0) {
+			String error = ValidationUtil.validateProduct(product);
+			if (error != null) {
 				redirect.addFlashAttribute("message", "saveFail");
-				redirect.addFlashAttribute("errorDetails", "Product amount must be greater than 0");
-				redirect.addFlashAttribute("product", product);
-				return "redirect:/dashboard/product";
-			}
-			
-			if (product.getCategory() == null || product.getCategory().getId() == null || product.getCategory().getId().isBlank()) {
-				redirect.addFlashAttribute("message", "saveFail");
-				redirect.addFlashAttribute("errorDetails", "Please select a category");
+				redirect.addFlashAttribute("errorDetails", error);
 				redirect.addFlashAttribute("product", product);
 				return "redirect:/dashboard/product";
 			}
 			
 			// Handle image upload
 			if (imageFile != null && !imageFile.isEmpty()) {
-				// New image uploaded
+				// New image uploaded; the replaced one is left to the UploadSweeper
 				String fileName = ImageUtil.save(imageFile);
 				product.setImage(fileName);
+				product.setImageInfo(imageVariants.describe(fileName));
+				imageVariants.generate(fileName, ImageVariants.PRODUCT);
 			} else {
 				// No new image uploaded
 				if (product.getId() != null) {
@@ -115,6 +104,7 @@ public class ProductController {
 					Product existingProduct = productServices.findById(product.getId());
 					if (existingProduct != null && existingProduct.getImage() != null) {
 						product.setImage(existingProduct.getImage());
+						product.setImageInfo(existingProduct.getImageInfo());
 					} else {
 						redirect.addFlashAttribute("message", "saveFail");
 						redirect.addFlashAttribute("errorDetails", "Product image is required");
@@ -161,6 +151,38 @@ public class ProductController {
 		return "redirect:/dashboard/product";
 	}
 
+	@PostMapping("/product/import")
+	public String importProducts(RedirectAttributes redirect, @RequestParam("importFile") MultipartFile importFile) {
+		if (importFile == null || importFile.isEmpty()) {
+			redirect.addFlashAttribute("message", "importFail");
+			redirect.addFlashAttribute("errorDetails", "Please choose a .csv or .xlsx file");
+			return "redirect:/dashboard/product";
+		}
+		try {
+			ImportJob job = productImporter.start(importFile);
+			return "redirect:/dashboard/product/import/" + job.getId();
+		} catch (RejectedExecutionException e) {
+			redirect.addFlashAttribute("message", "importFail");
+			redirect.addFlashAttribute("errorDetails", "Too many imports are running, please try again later");
+		} catch (Exception e) {
+			e.printStackTrace();
+			redirect.addFlashAttribute("message", "importFail");
+			redirect.addFlashAttribute("errorDetails", e.getMessage());
+		}
+		return "redirect:/dashboard/product";
+	}
+
+	@GetMapping("/product/import/{id}")
+	public String importProgress(Model model, @PathVariable("id") String id) {
+		ImportJob job = productImporter.find(id);
+		if (job == null) {
+			return "redirect:/dashboard/product";
+		}
+		model.addAttribute("job", job);
+		model.addAttribute("currentPage", "product");
+		return "product-import";
+	}
+
 	@GetMapping("/product/confirm-delete/{id}")
 	public String confirmDelete(RedirectAttributes redirect, @PathVariable("id") Integer id) {
 		Product product = productServices.findById(id);
@@ -180,8 +202,7 @@ public class ProductController {
 				return "redirect:/dashboard/product";
 			}
 			
-			Product deleted = productServices.delete(id);
-			ImageUtil.delete(deleted.getImage());
+			productServices.delete(id);
 			redirect.addFlashAttribute("message", "deleteTrue");
 		} catch (Exception e) {
 			// TODO: handle exception
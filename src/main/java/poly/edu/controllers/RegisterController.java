@@ -14,6 +14,7 @@ import org.springframework.web.multipart.MultipartFile;
 import jakarta.validation.Valid;
 import poly.edu.models.entities.Account;
 import poly.edu.models.services.AccountServices;
+import poly.edu.models.services.ImageVariants;
 import poly.edu.utils.ImageUtil;
 
 @Controller
@@ -22,6 +23,9 @@ public class RegisterController {
 	@Autowired
 	private AccountServices accountServices;
 
+	@Autowired
+	private ImageVariants imageVariants;
+
 	@ModelAttribute("account")
 	public Account initAccount() {
 		return new Account();
@@ -50,6 +54,8 @@ public class RegisterController {
 			try {
 				String fileName = ImageUtil.save(photoFile);
 				account.setPhoto(fileName);
+				account.setPhotoInfo(imageVariants.describe(fileName));
+				imageVariants.generate(fileName, ImageVariants.ACCOUNT);
 			} catch (IOException e) {
 				result.reject("photo", "Could not upload photo");
 				return "register";
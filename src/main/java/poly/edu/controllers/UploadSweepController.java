@@ -0,0 +1,36 @@
+package poly.edu.controllers;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import poly.edu.models.services.UploadSweeper;
+
+@RestController
+@RequestMapping("/dashboard/uploads")
+public class UploadSweepController {
+
+	@Autowired
+	private UploadSweeper uploadSweeper;
+
+	// GET /dashboard/uploads/sweep -> {"last": {...}, "cursor": "3f", "reclaimedBytes": .., "quarantineBytes": ..}
+	@GetMapping("/sweep")
+	public Map<String, Object> statistics() {
+		return uploadSweeper.statistics();
+	}
+
+	// Sweep the next slice now instead of waiting for the schedule
+	@PostMapping("/sweep")
+	public ResponseEntity<Map<String, Object>> sweep() {
+		if (uploadSweeper.sweep() == null) {
+			return ResponseEntity.status(HttpStatus.CONFLICT).body(uploadSweeper.statistics());
+		}
+		return ResponseEntity.ok(uploadSweeper.statistics());
+	}
+}
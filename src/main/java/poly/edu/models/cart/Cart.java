@@ -0,0 +1,207 @@
+package poly.edu.models.cart;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A shopper's cart as kept in the HTTP session: for each line a product id,
+ * a quantity and the unit price last shown to the shopper, in primitive
+ * arrays. No entity is referenced, so a cart of a few lines weighs a couple of
+ * hundred bytes and serializes as such; products are looked up again only
+ * when the cart is displayed (see {@link CartLine}). The recorded price is
+ * never charged: it is brought up to date whenever the cart is shown or
+ * ordered, and only tells the shopper that a price has changed.
+ *
+ * A cart holds at most {@link #MAX_LINES} lines, which bounds what one session
+ * can cost.
+ */
+public class Cart implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int MAX_LINES = 50;
+
+	private int[] productIds = new int[0];
+	private int[] quantities = new int[0];
+	private double[] prices = new double[0];
+	private int size;
+
+	/**
+	 * Add to the quantity of a product, or add a line for it
+	 *
+	 * @param price unit price, only recorded for a new line
+	 * @throws IllegalStateException when a new line is needed and the cart is
+	 *                               full
+	 */
+	public void add(int productId, int quantity, double price) {
+		int i = indexOf(productId);
+		if (i >= 0) {
+			quantities[i] += quantity;
+			return;
+		}
+		if (size == MAX_LINES) {
+			throw new IllegalStateException("Cart is full");
+		}
+		if (size == productIds.length) {
+			int capacity = Math.min(MAX_LINES, Math.max(4, size * 2));
+			productIds = Arrays.copyOf(productIds, capacity);
+			quantities = Arrays.copyOf(quantities, capacity);
+			prices = Arrays.copyOf(prices, capacity);
+		}
+		productIds[size] = productId;
+		quantities[size] = quantity;
+		prices[size] = price;
+		size++;
+	}
+
+	/**
+	 * Take in the lines of another cart. A product in both keeps the larger
+	 * quantity and this cart's price, so merging the same cart twice changes
+	 * nothing; new lines beyond {@link #MAX_LINES} are dropped.
+	 */
+	public void merge(Cart other) {
+		for (int i = 0; i < other.size; i++) {
+			int j = indexOf(other.productIds[i]);
+			if (j >= 0) {
+				quantities[j] = Math.max(quantities[j], other.quantities[i]);
+			} else if (size < MAX_LINES) {
+				add(other.productIds[i], other.quantities[i], other.prices[i]);
+			}
+		}
+	}
+
+	/**
+	 * Change the quantity of a line; 0 or less removes it
+	 *
+	 * @return false when the product is not in the cart
+	 */
+	public boolean setQuantity(int productId, int quantity) {
+		int i = indexOf(productId);
+		if (i < 0) {
+			return false;
+		}
+		if (quantity <= 0) {
+			removeAt(i);
+		} else {
+			quantities[i] = quantity;
+		}
+		return true;
+	}
+
+	/**
+	 * Record the current unit price of a product
+	 *
+	 * @return true when it differs from the price recorded so far
+	 */
+	public boolean reprice(int productId, double price) {
+		int i = indexOf(productId);
+		if (i < 0 || prices[i] == price) {
+			return false;
+		}
+		prices[i] = price;
+		return true;
+	}
+
+	public void remove(int productId) {
+		int i = indexOf(productId);
+		if (i >= 0) {
+			removeAt(i);
+		}
+	}
+
+	public void clear() {
+		productIds = new int[0];
+		quantities = new int[0];
+		prices = new double[0];
+		size = 0;
+	}
+
+	/**
+	 * Quantity of a product in the cart, 0 when absent
+	 */
+	public int quantityOf(int productId) {
+		int i = indexOf(productId);
+		return i < 0 ? 0 : quantities[i];
+	}
+
+	/** Number of lines */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int productId(int line) {
+		return productIds[check(line)];
+	}
+
+	public int quantity(int line) {
+		return quantities[check(line)];
+	}
+
+	public double price(int line) {
+		return prices[check(line)];
+	}
+
+	/** Number of items, for the cart badge */
+	public int getItemCount() {
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			count += quantities[i];
+		}
+		return count;
+	}
+
+	/** Sum of the lines at their recorded prices */
+	public double getTotal() {
+		double total = 0;
+		for (int i = 0; i < size; i++) {
+			total += prices[i] * quantities[i];
+		}
+		return total;
+	}
+
+	/** An independent cart with the same lines */
+	public Cart copy() {
+		Cart copy = new Cart();
+		copy.productIds = Arrays.copyOf(productIds, size);
+		copy.quantities = Arrays.copyOf(quantities, size);
+		copy.prices = Arrays.copyOf(prices, size);
+		copy.size = size;
+		return copy;
+	}
+
+	/**
+	 * Approximate heap taken by this cart, in bytes (object header and fields,
+	 * plus the three arrays at their current capacity)
+	 */
+	public long estimatedBytes() {
+		return 48 + 3 * 16 + productIds.length * (4L + 4L + 8L);
+	}
+
+	private int indexOf(int productId) {
+		for (int i = 0; i < size; i++) {
+			if (productIds[i] == productId) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void removeAt(int i) {
+		int tail = size - i - 1;
+		System.arraycopy(productIds, i + 1, productIds, i, tail);
+		System.arraycopy(quantities, i + 1, quantities, i, tail);
+		System.arraycopy(prices, i + 1, prices, i, tail);
+		size--;
+	}
+
+	private int check(int line) {
+		if (line < 0 || line >= size) {
+			throw new IndexOutOfBoundsException(line);
+		}
+		return line;
+	}
+}
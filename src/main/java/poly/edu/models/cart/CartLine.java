@@ -0,0 +1,20 @@
+package poly.edu.models.cart;
+
+import poly.edu.models.entities.Product;
+
+/**
+ * A cart line with its product, rebuilt from the catalog to render the cart
+ *
+ * @param price         current unit price of the product
+ * @param previousPrice unit price the shopper saw before, or null when unchanged
+ */
+public record CartLine(Product product, int quantity, double price, Double previousPrice) {
+
+	public double subtotal() {
+		return price * quantity;
+	}
+
+	public boolean priceChanged() {
+		return previousPrice != null;
+	}
+}
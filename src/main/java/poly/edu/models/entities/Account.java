@@ -2,7 +2,9 @@ package poly.edu.models.entities;
 
 import java.util.List;
 
+import jakarta.persistence.AttributeOverride;
 import jakarta.persistence.Column;
+import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.OneToMany;
@@ -10,7 +12,9 @@ import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @NoArgsConstructor
 @AllArgsConstructor
@@ -38,6 +42,13 @@ public class Account {
 
     @Column(name = "Photo")
     private String photo;
+
+    @Embedded
+    @AttributeOverride(name = "width", column = @Column(name = "PhotoWidth"))
+    @AttributeOverride(name = "height", column = @Column(name = "PhotoHeight"))
+    @AttributeOverride(name = "color", column = @Column(name = "PhotoColor", length = 7))
+    @AttributeOverride(name = "placeholder", column = @Column(name = "PhotoPlaceholder", length = 1000))
+    private ImageInfo photoInfo;
     
     @Column(name = "Address", length = 255)
     private String address;
@@ -51,6 +62,9 @@ public class Account {
     @Column(name = "Admin")
     private Boolean admin = false;
 
+    // Kept out of the generated toString / equals / hashCode, which would otherwise load every order
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     @OneToMany(mappedBy = "account")
     private List<Order> orders;
 }
@@ -1,7 +1,12 @@
 package poly.edu.models.entities;
 
+import java.io.Serializable;
 import java.util.List;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
@@ -19,7 +24,12 @@ import lombok.Setter;
 @Setter
 @Entity
 @Table(name = "Categories")
-public class Category {
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "catalog-category")
+public class Category implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
 	
 	@Id
     @Column(name = "Id", length = 4)
@@ -31,5 +41,6 @@ public class Category {
 	private String name;
     
     @OneToMany(mappedBy = "category")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "catalog-category-products")
     private List<Product> products;
 }
@@ -0,0 +1,56 @@
+package poly.edu.models.entities;
+
+import java.io.Serializable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * What the page needs to lay out an image before it arrives, read once when
+ * the image is uploaded and stored next to the image name
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Embeddable
+public class ImageInfo implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+
+    @Column(name = "Width")
+    private Integer width;
+
+    @Column(name = "Height")
+    private Integer height;
+
+    // Average color, "#rrggbb"
+    @Column(name = "Color", length = 7)
+    private String color;
+
+    // Low-quality preview: a PNG a few pixels wide, as a data: URI
+    @Column(name = "Placeholder", length = 1000)
+    private String placeholder;
+
+    /**
+     * Inline style that reserves the image's box and paints the preview in it
+     * until the real image has loaded, e.g.
+     * {@code aspect-ratio: 800 / 600; background: #a08070 url('data:...') center / cover no-repeat}
+     */
+    public String getStyle() {
+        StringBuilder style = new StringBuilder();
+        if (width != null && height != null && width > 0 && height > 0) {
+            style.append("aspect-ratio: ").append(width).append(" / ").append(height).append("; ");
+        }
+        if (color != null || placeholder != null) {
+            style.append("background: ").append(color != null ? color : "transparent");
+            if (placeholder != null) {
+                style.append(" url('").append(placeholder).append("') center / cover no-repeat");
+            }
+        }
+        return style.toString();
+    }
+}
@@ -12,6 +12,9 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.NamedSubgraph;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
@@ -25,8 +28,19 @@ import lombok.Setter;
 @Setter
 @Entity
 @Table(name = "Orders")
+@NamedEntityGraph(name = Order.WITH_ACCOUNT, attributeNodes = @NamedAttributeNode("account"))
+@NamedEntityGraph(name = Order.WITH_DETAILS, attributeNodes = {
+        @NamedAttributeNode("account"),
+        @NamedAttributeNode(value = "orderDetails", subgraph = "details") },
+    subgraphs = @NamedSubgraph(name = "details", attributeNodes = @NamedAttributeNode("product")))
 public class Order {
 
+    // Order dashboard rows: customer name / phone
+    public static final String WITH_ACCOUNT = "Order.account";
+
+    // Order view and profile history: customer, items and their products
+    public static final String WITH_DETAILS = "Order.details";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "Id")
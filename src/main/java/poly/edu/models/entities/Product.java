@@ -1,16 +1,26 @@
 package poly.edu.models.entities;
 
+import java.io.Serializable;
 import java.time.LocalDate;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.format.annotation.DateTimeFormat;
 
+import jakarta.persistence.AttributeOverride;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
+import jakarta.persistence.Embedded;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedAttributeNode;
+import jakarta.persistence.NamedEntityGraph;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
@@ -18,6 +28,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import poly.edu.utils.TextUtil;
 
 
 @NoArgsConstructor
@@ -26,7 +37,16 @@ import lombok.Setter;
 @Getter
 @Setter
 @Table(name = "Products")
-public class Product {
+@NamedEntityGraph(name = Product.WITH_CATEGORY, attributeNodes = @NamedAttributeNode("category"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "catalog-product")
+public class Product implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+
+    // Listing pages (product cards, dashboard rows) always render the category
+    public static final String WITH_CATEGORY = "Product.category";
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -37,10 +57,21 @@ public class Product {
     @NotBlank
     private String name; //use not blank for string
 
+    // Name folded by TextUtil.fold, what keyword filters match in SQL
+    @Column(name = "SearchName", length = 50)
+    private String searchName;
+
     @Column(name = "Image")
     @NotBlank
     private String image;
 
+    @Embedded
+    @AttributeOverride(name = "width", column = @Column(name = "ImageWidth"))
+    @AttributeOverride(name = "height", column = @Column(name = "ImageHeight"))
+    @AttributeOverride(name = "color", column = @Column(name = "ImageColor", length = 7))
+    @AttributeOverride(name = "placeholder", column = @Column(name = "ImagePlaceholder", length = 1000))
+    private ImageInfo imageInfo;
+
     @Column(name = "Price")
     @Positive
     private Double price; //use positive for double or integer (price > 0)
@@ -59,4 +90,10 @@ public class Product {
     @ManyToOne
     @JoinColumn(name = "CategoryId")
     private Category category;
+
+    @PrePersist
+    @PreUpdate
+    void foldName() {
+        searchName = TextUtil.fold(name);
+    }
 }
@@ -0,0 +1,41 @@
+package poly.edu.models.entities;
+
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Best-seller summary row: quantity of one product sold on one day, counting
+ * every order that is not cancelled
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Entity
+@Table(name = "ProductSales")
+public class ProductSale {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "Id")
+    private Long id;
+
+    @Column(name = "ProductId", nullable = false)
+    private Integer productId;
+
+    @Column(name = "SaleDate", nullable = false)
+    private LocalDate saleDate;
+
+    @Column(name = "Quantity", nullable = false)
+    private Integer quantity;
+}
@@ -0,0 +1,8 @@
+package poly.edu.models.projections;
+
+/**
+ * One row of the account dashboard; never carries the password or the orders
+ */
+public record AccountRow(String username, String fullname, String email, String phone, String photo,
+		Boolean activated, Boolean admin) {
+}
@@ -0,0 +1,10 @@
+package poly.edu.models.projections;
+
+import java.time.LocalDate;
+
+/**
+ * One row of the order dashboard, with the customer columns it shows
+ */
+public record OrderRow(Long id, LocalDate createDate, String status, String address, String customerName,
+		String customerPhone) {
+}
@@ -0,0 +1,9 @@
+package poly.edu.models.projections;
+
+/**
+ * One row of the product dashboard, read as plain columns instead of a managed
+ * Product and its category
+ */
+public record ProductRow(Integer id, String name, String image, Double price, Integer amount, Boolean available,
+		String categoryName) {
+}
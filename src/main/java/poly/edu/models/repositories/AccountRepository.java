@@ -1,11 +1,32 @@
 package poly.edu.models.repositories;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import poly.edu.models.entities.Account;
 
 @Repository
-public interface AccountRepository extends JpaRepository<Account, String> {
+public interface AccountRepository extends JpaRepository<Account, String>, JpaSpecificationExecutor<Account> {
 	
+	// Avatars that need resized variants
+	@Query("SELECT DISTINCT a.photo FROM Account a WHERE a.photo IS NOT NULL")
+	List<String> findDistinctPhotos();
+
+	// Avatars stored before their size and placeholder were recorded
+	@Query("SELECT DISTINCT a.photo FROM Account a WHERE a.photo IS NOT NULL AND a.photoInfo.width IS NULL")
+	List<String> findPhotosWithoutInfo();
+
+	@Transactional
+	@Modifying
+	@Query("UPDATE Account a SET a.photoInfo.width = :width, a.photoInfo.height = :height, "
+			+ "a.photoInfo.color = :color, a.photoInfo.placeholder = :placeholder WHERE a.photo = :photo")
+	int updatePhotoInfo(@Param("photo") String photo, @Param("width") Integer width,
+			@Param("height") Integer height, @Param("color") String color, @Param("placeholder") String placeholder);
 }
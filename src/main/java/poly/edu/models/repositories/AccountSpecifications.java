@@ -0,0 +1,56 @@
+package poly.edu.models.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+
+import poly.edu.models.entities.Account;
+import poly.edu.models.projections.AccountRow;
+
+public class AccountSpecifications {
+
+	/**
+	 * Match accounts whose username or full name contains the keyword
+	 * (case-insensitive)
+	 */
+	public static Specification<Account> keyword(String keyword) {
+		if (keyword == null || keyword.isBlank()) {
+			return null;
+		}
+		String pattern = "%" + keyword.trim().toLowerCase() + "%";
+		return (root, query, cb) -> cb.or(cb.like(cb.lower(root.get("username")), pattern),
+				cb.like(cb.lower(root.get("fullname")), pattern));
+	}
+
+	public static Specification<Account> isActivated(Boolean activated) {
+		if (activated == null) {
+			return null;
+		}
+		return (root, query, cb) -> cb.equal(root.get("activated"), activated);
+	}
+
+	public static Specification<Account> isAdmin(Boolean admin) {
+		if (admin == null) {
+			return null;
+		}
+		return (root, query, cb) -> cb.equal(root.get("admin"), admin);
+	}
+
+	/**
+	 * Columns of an {@link AccountRow}
+	 */
+	public static List<Selection<?>> rowColumns(Root<Account> root) {
+		return List.of(root.get("username"), root.get("fullname"), root.get("email"), root.get("phone"),
+				root.get("photo"), root.get("activated"), root.get("admin"));
+	}
+
+	/**
+	 * Combine the account dashboard filters into one specification
+	 */
+	public static Specification<Account> filter(String keyword, Boolean activated, Boolean admin) {
+		return Specification.where(keyword(keyword)).and(isActivated(activated)).and(isAdmin(admin));
+	}
+}
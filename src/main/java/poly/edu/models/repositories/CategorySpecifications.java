@@ -0,0 +1,19 @@
+package poly.edu.models.repositories;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import poly.edu.models.entities.Category;
+
+public class CategorySpecifications {
+
+	/**
+	 * Match categories whose name contains the keyword (case-insensitive)
+	 */
+	public static Specification<Category> nameContains(String keyword) {
+		if (keyword == null || keyword.isBlank()) {
+			return null;
+		}
+		String pattern = "%" + keyword.trim().toLowerCase() + "%";
+		return (root, query, cb) -> cb.like(cb.lower(root.get("name")), pattern);
+	}
+}
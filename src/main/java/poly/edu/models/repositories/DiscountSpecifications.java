@@ -0,0 +1,57 @@
+package poly.edu.models.repositories;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import jakarta.persistence.criteria.Fetch;
+import jakarta.persistence.criteria.JoinType;
+
+import poly.edu.models.entities.Discount;
+
+public class DiscountSpecifications {
+
+	/**
+	 * Match discounts whose product name contains the keyword (case-insensitive)
+	 */
+	public static Specification<Discount> productNameContains(String keyword) {
+		if (keyword == null || keyword.isBlank()) {
+			return null;
+		}
+		String pattern = "%" + keyword.trim().toLowerCase() + "%";
+		return (root, query, cb) -> cb.like(cb.lower(root.get("product").get("name")), pattern);
+	}
+
+	public static Specification<Discount> hasType(String discountType) {
+		if (discountType == null || discountType.isBlank()) {
+			return null;
+		}
+		return (root, query, cb) -> cb.equal(cb.lower(root.get("discountType")), discountType.toLowerCase());
+	}
+
+	public static Specification<Discount> isActive(Boolean active) {
+		if (active == null) {
+			return null;
+		}
+		return (root, query, cb) -> cb.equal(root.get("active"), active);
+	}
+
+	/**
+	 * Fetch-join the product and its category shown on every dashboard row.
+	 * Skipped for count queries.
+	 */
+	public static Specification<Discount> fetchProduct() {
+		return (root, query, cb) -> {
+			if (!Long.class.equals(query.getResultType()) && !long.class.equals(query.getResultType())) {
+				Fetch<Discount, ?> product = root.fetch("product", JoinType.INNER);
+				product.fetch("category", JoinType.LEFT);
+			}
+			return null;
+		};
+	}
+
+	/**
+	 * Combine the discount dashboard filters into one specification
+	 */
+	public static Specification<Discount> filter(String keyword, String discountType, Boolean active) {
+		return Specification.where(fetchProduct()).and(productNameContains(keyword)).and(hasType(discountType)).and(isActive(active));
+	}
+}
@@ -0,0 +1,202 @@
+package poly.edu.models.repositories;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.util.ClassUtils;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
+
+public class KeysetSpecifications {
+
+	/**
+	 * The cursor when it was produced for this listing order, the initial cursor
+	 * otherwise: its keys must be the sort properties, in order, each null or a
+	 * value of the property's type. A cursor kept while the sort was changed, or
+	 * a stale or forged token, starts over from the first page.
+	 * 
+	 * @param entity the queried entity, whose properties are sorted on
+	 */
+	public static Cursor validate(Class<?> entity, Sort sort, Cursor cursor) {
+		if (cursor.isInitial()) {
+			return cursor;
+		}
+		List<String> properties = sort.stream().map(Sort.Order::getProperty).toList();
+		if (!properties.equals(new ArrayList<>(cursor.getKeys().keySet()))) {
+			return Cursor.initial();
+		}
+		for (String property : properties) {
+			Object value = cursor.getKeys().get(property);
+			PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(entity, property);
+			if (descriptor == null
+					|| (value != null && !ClassUtils.isAssignableValue(descriptor.getPropertyType(), value))) {
+				return Cursor.initial();
+			}
+		}
+		return cursor;
+	}
+
+	/**
+	 * Match rows that come after (or before, for a backward cursor) the cursor
+	 * position in the given sort order:
+	 * (k1 > v1) OR (k1 = v1 AND k2 > v2) OR ...
+	 * 
+	 * NULL sorts below every value, as SQL Server orders it in both directions:
+	 * after a NULL key come the non-null values, before it nothing, and rows
+	 * with a NULL key are reached from below any non-null value.
+	 * 
+	 * @param sort   the listing order, must end with a unique property (the id)
+	 * @param cursor the cursor, ignored when initial; see
+	 *               {@link #validate(Class, Sort, Cursor)}
+	 * @return the specification, or null for the first page
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public static <T> Specification<T> seek(Sort sort, Cursor cursor) {
+		if (cursor.isInitial()) {
+			return null;
+		}
+		List<Sort.Order> orders = sort.toList();
+		return (root, query, cb) -> {
+			List<Predicate> branches = new ArrayList<>();
+			List<Predicate> equalSoFar = new ArrayList<>();
+			for (Sort.Order order : orders) {
+				Comparable value = (Comparable) cursor.getKeys().get(order.getProperty());
+				Expression<Comparable> path = root.get(order.getProperty());
+				boolean greater = order.isAscending() != cursor.isBackward();
+
+				Predicate beyond;
+				if (value == null) {
+					beyond = greater ? cb.isNotNull(path) : cb.disjunction();
+				} else {
+					beyond = greater ? cb.greaterThan(path, value) : cb.or(cb.lessThan(path, value), cb.isNull(path));
+				}
+				List<Predicate> branch = new ArrayList<>(equalSoFar);
+				branch.add(beyond);
+				branches.add(cb.and(branch.toArray(new Predicate[0])));
+
+				equalSoFar.add(value == null ? cb.isNull(path) : cb.equal(path, value));
+			}
+			return cb.or(branches.toArray(new Predicate[0]));
+		};
+	}
+
+	/**
+	 * Fetch one keyset page. Only size + 1 rows are read whatever the depth of the
+	 * page, so page 1000 costs the same as page 1.
+	 * 
+	 * @param repository the repository to query
+	 * @param entity     the entity of the repository
+	 * @param filter     the listing filter, may be null
+	 * @param sort       the listing order, must end with the id
+	 * @param cursor     the requested position
+	 * @param size       the page size
+	 */
+	public static <T> CursorPage<T> scroll(JpaSpecificationExecutor<T> repository, Class<T> entity,
+			Specification<T> filter, Sort sort, Cursor cursor, int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Size must be > 0");
+		}
+		cursor = validate(entity, sort, cursor);
+		Specification<T> spec = Specification.where(filter).and(seek(sort, cursor));
+		Sort order = cursor.isBackward() ? sort.reverse() : sort;
+
+		List<T> rows = new ArrayList<>(repository.findBy(spec, q -> q.sortBy(order).limit(size + 1).all()));
+		return page(rows, sort, cursor, size);
+	}
+
+	/**
+	 * Fetch one keyset page as projection rows: the query selects only the given
+	 * columns and builds one {@code row} per result, so no entity is loaded into
+	 * the persistence context. The sort properties must be components of the row.
+	 * 
+	 * @param entityManager the entity manager to query with
+	 * @param entity        the queried entity
+	 * @param row           the projection type, with a constructor taking the
+	 *                      columns in order
+	 * @param columns       the selected columns
+	 * @param filter        the listing filter, may be null
+	 * @param sort          the listing order, must end with the id
+	 * @param cursor        the requested position
+	 * @param size          the page size
+	 */
+	public static <T, R> CursorPage<R> scroll(EntityManager entityManager, Class<T> entity, Class<R> row,
+			Function<Root<T>, List<Selection<?>>> columns, Specification<T> filter, Sort sort, Cursor cursor,
+			int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Size must be > 0");
+		}
+		cursor = validate(entity, sort, cursor);
+		Specification<T> spec = Specification.where(filter).and(seek(sort, cursor));
+		Sort order = cursor.isBackward() ? sort.reverse() : sort;
+
+		CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+		CriteriaQuery<R> query = cb.createQuery(row);
+		Root<T> root = query.from(entity);
+		query.select(cb.construct(row, columns.apply(root).toArray(new Selection<?>[0])));
+		Predicate predicate = spec.toPredicate(root, query, cb);
+		if (predicate != null) {
+			query.where(predicate);
+		}
+		query.orderBy(QueryUtils.toOrders(order, root, cb));
+
+		List<R> rows = new ArrayList<>(entityManager.createQuery(query).setMaxResults(size + 1).getResultList());
+		return page(rows, sort, cursor, size);
+	}
+
+	/**
+	 * Trim the size + 1 rows read for a page and compute its cursors
+	 */
+	private static <T> CursorPage<T> page(List<T> rows, Sort sort, Cursor cursor, int size) {
+		boolean more = rows.size() > size;
+		if (more) {
+			rows = rows.subList(0, size);
+		}
+		if (cursor.isBackward()) {
+			Collections.reverse(rows); // back to display order
+		}
+
+		String next = null;
+		String previous = null;
+		if (!rows.isEmpty()) {
+			if (cursor.isBackward() || more) {
+				next = Cursor.after(keysOf(rows.get(rows.size() - 1), sort)).encode();
+			}
+			if (cursor.isBackward() ? more : !cursor.isInitial()) {
+				previous = Cursor.before(keysOf(rows.get(0), sort)).encode();
+			}
+		}
+		return new CursorPage<>(rows, next, previous);
+	}
+
+	/**
+	 * Read the sort key values of a row
+	 */
+	public static Map<String, Object> keysOf(Object row, Sort sort) {
+		BeanWrapper wrapper = PropertyAccessorFactory.forBeanPropertyAccess(row);
+		Map<String, Object> keys = new LinkedHashMap<>();
+		for (Sort.Order order : sort) {
+			keys.put(order.getProperty(), wrapper.getPropertyValue(order.getProperty()));
+		}
+		return keys;
+	}
+}
@@ -16,4 +16,8 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long>
 	long countByProductId(@Param("productId") Integer productId);
 	
 	List<OrderDetail> findByProductId(Integer productId);
+	
+	// [orderId, productId] for every order line, grouped by order
+	@Query("SELECT od.order.id, od.product.id FROM OrderDetail od ORDER BY od.order.id")
+	List<Object[]> findOrderProductPairs();
 }
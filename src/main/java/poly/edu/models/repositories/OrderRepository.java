@@ -2,9 +2,12 @@ package poly.edu.models.repositories;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -15,6 +18,7 @@ import poly.edu.models.entities.Order;
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
 	
+	@EntityGraph(Order.WITH_ACCOUNT)
 	@Query("SELECT o FROM Order o WHERE " +
 		   "(:keyword IS NULL OR :keyword = '' OR " +
 		   "LOWER(o.account.fullname) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
@@ -30,4 +34,16 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
 							  Pageable pageable);
 	
 	List<Order> findByStatus(String status);
+	
+	// Order dashboard: one query, customer joined in
+	@Override
+	@EntityGraph(Order.WITH_ACCOUNT)
+	List<Order> findAll(Sort sort);
+	
+	@EntityGraph(Order.WITH_DETAILS)
+	Optional<Order> findDetailedById(Long id);
+	
+	// Profile order history: orders, items and products in one query
+	@EntityGraph(Order.WITH_DETAILS)
+	List<Order> findByAccountUsernameOrderByIdAsc(String username);
 }
@@ -0,0 +1,88 @@
+package poly.edu.models.repositories;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+
+import poly.edu.models.entities.Account;
+import poly.edu.models.entities.Order;
+import poly.edu.models.projections.OrderRow;
+
+public class OrderSpecifications {
+
+	/**
+	 * Match orders whose customer name, username or id contains the keyword
+	 * (case-insensitive)
+	 */
+	public static Specification<Order> keyword(String keyword) {
+		if (keyword == null || keyword.isBlank()) {
+			return null;
+		}
+		String pattern = "%" + keyword.trim().toLowerCase() + "%";
+		return (root, query, cb) -> {
+			Join<Order, Account> account = account(root);
+			return cb.or(cb.like(cb.lower(account.get("fullname")), pattern),
+					cb.like(cb.lower(account.get("username")), pattern),
+					cb.like(root.get("id").as(String.class), pattern));
+		};
+	}
+
+	public static Specification<Order> hasStatus(String status) {
+		if (status == null || status.isBlank()) {
+			return null;
+		}
+		return (root, query, cb) -> cb.equal(root.get("status"), status);
+	}
+
+	/**
+	 * Match orders created between two days, both inclusive; either may be null
+	 */
+	public static Specification<Order> createdBetween(LocalDate fromDate, LocalDate toDate) {
+		if (fromDate == null && toDate == null) {
+			return null;
+		}
+		return (root, query, cb) -> {
+			if (fromDate == null) {
+				return cb.lessThanOrEqualTo(root.get("createDate"), toDate);
+			}
+			if (toDate == null) {
+				return cb.greaterThanOrEqualTo(root.get("createDate"), fromDate);
+			}
+			return cb.between(root.get("createDate"), fromDate, toDate);
+		};
+	}
+
+	/**
+	 * Columns of an {@link OrderRow}, the customer joined in for its name and
+	 * phone
+	 */
+	public static List<Selection<?>> rowColumns(Root<Order> root) {
+		Join<Order, Account> account = account(root);
+		return List.of(root.get("id"), root.get("createDate"), root.get("status"), root.get("address"),
+				account.get("fullname"), account.get("phone"));
+	}
+
+	// The customer join, shared by the selected columns and the keyword filter
+	@SuppressWarnings("unchecked")
+	private static Join<Order, Account> account(Root<Order> root) {
+		for (Join<Order, ?> join : root.getJoins()) {
+			if ("account".equals(join.getAttribute().getName())) {
+				return (Join<Order, Account>) join;
+			}
+		}
+		return root.join("account", JoinType.INNER);
+	}
+
+	/**
+	 * Combine the order dashboard filters into one specification
+	 */
+	public static Specification<Order> filter(String keyword, String status, LocalDate fromDate, LocalDate toDate) {
+		return Specification.where(keyword(keyword)).and(hasStatus(status)).and(createdBetween(fromDate, toDate));
+	}
+}
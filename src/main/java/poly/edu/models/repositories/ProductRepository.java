@@ -1,11 +1,77 @@
 package poly.edu.models.repositories;
 
+import java.util.List;
+
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.QueryHint;
 import poly.edu.models.entities.Product;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Integer> {
+public interface ProductRepository extends JpaRepository<Product, Integer>, JpaSpecificationExecutor<Product> {
+
+	// Query space of the stock update, shared with no entity
+	String STOCK_SPACE = "ProductStock";
+
+	// Catalog listings: result ids go to the query cache, rows to the entity cache
+	@Override
+	@EntityGraph(Product.WITH_CATEGORY)
+	@QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
+	List<Product> findAll();
+
+	@Override
+	@EntityGraph(Product.WITH_CATEGORY)
+	@QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
+	List<Product> findAll(Sort sort);
+	
+	// Photos that need resized variants
+	@Query("SELECT DISTINCT p.image FROM Product p WHERE p.image IS NOT NULL")
+	List<String> findDistinctImages();
+
+	// Rows written before the folded name was stored
+	List<Product> findTop500BySearchNameIsNull();
+
+	// Photos stored before their size and placeholder were recorded
+	@Query("SELECT DISTINCT p.image FROM Product p WHERE p.image IS NOT NULL AND p.imageInfo.width IS NULL")
+	List<String> findImagesWithoutInfo();
+
+	@Transactional
+	@Modifying
+	@Query("UPDATE Product p SET p.imageInfo.width = :width, p.imageInfo.height = :height, "
+			+ "p.imageInfo.color = :color, p.imageInfo.placeholder = :placeholder WHERE p.image = :image")
+	int updateImageInfo(@Param("image") String image, @Param("width") Integer width,
+			@Param("height") Integer height, @Param("color") String color, @Param("placeholder") String placeholder);
+
+	/**
+	 * Checked and taken in one statement: concurrent checkouts cannot take more
+	 * than is left. A JPQL bulk update would invalidate the whole catalog-product
+	 * region and every cached Product query on each checkout line, so this is a
+	 * native update declaring a query space of its own; the caller evicts the one
+	 * product it changed (see CatalogCache). No cached query filters on Amount.
+	 */
+	@Modifying
+	@QueryHints(@QueryHint(name = AvailableHints.HINT_NATIVE_SPACES, value = STOCK_SPACE))
+	@Query(nativeQuery = true, value = "UPDATE Products SET Amount = Amount - :quantity "
+			+ "WHERE Id = :id AND Amount >= :quantity")
+	int decrementAmount(@Param("id") Integer id, @Param("quantity") int quantity);
+
+	// [productId, categoryId] of every product filed in a category
+	@Query("SELECT p.id, p.category.id FROM Product p WHERE p.category IS NOT NULL")
+	List<Object[]> findCategoryIds();
+
+	@Query("SELECT p.category.id FROM Product p WHERE p.id = :id")
+	String findCategoryIdById(@Param("id") Integer id);
 
+	@Query("SELECT p.amount FROM Product p WHERE p.id = :id")
+	Integer findAmountById(@Param("id") Integer id);
 }
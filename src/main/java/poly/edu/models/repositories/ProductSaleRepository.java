@@ -0,0 +1,52 @@
+package poly.edu.models.repositories;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import poly.edu.models.entities.ProductSale;
+
+@Repository
+public interface ProductSaleRepository extends JpaRepository<ProductSale, Long> {
+
+	// [productId, quantity sold] since the given day (inclusive)
+	@Query("SELECT s.productId, SUM(s.quantity) FROM ProductSale s WHERE s.saleDate >= :from GROUP BY s.productId")
+	List<Object[]> sumQuantitySince(@Param("from") LocalDate from);
+
+	// [productId, quantity sold] all time
+	@Query("SELECT s.productId, SUM(s.quantity) FROM ProductSale s GROUP BY s.productId")
+	List<Object[]> sumQuantity();
+
+	/**
+	 * Add (or subtract, with a negative quantity) to the product's row of the day,
+	 * creating it if needed, in one atomic statement
+	 */
+	@Transactional
+	@Modifying
+	@Query(nativeQuery = true, value = "MERGE ProductSales WITH (HOLDLOCK) AS t "
+			+ "USING (SELECT :productId AS ProductId, :saleDate AS SaleDate) AS s "
+			+ "ON t.ProductId = s.ProductId AND t.SaleDate = s.SaleDate "
+			+ "WHEN MATCHED THEN UPDATE SET Quantity = t.Quantity + :quantity "
+			+ "WHEN NOT MATCHED THEN INSERT (ProductId, SaleDate, Quantity) VALUES (:productId, :saleDate, :quantity);")
+	int addQuantity(@Param("productId") Integer productId, @Param("saleDate") LocalDate saleDate,
+			@Param("quantity") Integer quantity);
+
+	/**
+	 * Fill the summary from the order history (first start on an existing
+	 * database)
+	 */
+	@Transactional
+	@Modifying
+	@Query(nativeQuery = true, value = "INSERT INTO ProductSales (ProductId, SaleDate, Quantity) "
+			+ "SELECT od.ProductId, CAST(o.CreateDate AS DATE), SUM(od.Quantity) "
+			+ "FROM OrderDetails od JOIN Orders o ON o.Id = od.OrderId "
+			+ "WHERE o.Status <> 'Cancelled' "
+			+ "GROUP BY od.ProductId, CAST(o.CreateDate AS DATE)")
+	int backfillFromOrders();
+}
@@ -0,0 +1,89 @@
+package poly.edu.models.repositories;
+
+import java.util.List;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+
+import poly.edu.models.entities.Category;
+import poly.edu.models.entities.Product;
+import poly.edu.models.projections.ProductRow;
+import poly.edu.utils.TextUtil;
+
+public class ProductSpecifications {
+
+	/**
+	 * Match products whose folded name contains every term of the keyword, so
+	 * "hoa cuoi" matches "Hoa Cưới" (see {@link TextUtil#fold(String)})
+	 * 
+	 * @param keyword the search keyword, ignored when null or blank
+	 * @return the specification, or null when there is nothing to filter
+	 */
+	public static Specification<Product> nameContains(String keyword) {
+		List<String> terms = TextUtil.tokenize(keyword);
+		if (terms.isEmpty()) {
+			return null;
+		}
+		// Folded terms are [a-z0-9] only: nothing to escape in the pattern
+		return (root, query, cb) -> cb.and(terms.stream()
+				.map(term -> cb.like(root.get("searchName"), "%" + term + "%"))
+				.toArray(Predicate[]::new));
+	}
+
+	/**
+	 * Match products that belong to the given category
+	 */
+	public static Specification<Product> inCategory(String categoryId) {
+		if (categoryId == null || categoryId.isBlank()) {
+			return null;
+		}
+		return (root, query, cb) -> cb.equal(root.get("category").get("id"), categoryId);
+	}
+
+	/**
+	 * Match products by availability flag
+	 */
+	public static Specification<Product> isAvailable(Boolean available) {
+		if (available == null) {
+			return null;
+		}
+		return (root, query, cb) -> cb.equal(root.get("available"), available);
+	}
+
+	/**
+	 * Fetch-join the category so listing rows do not load it one by one. Only for
+	 * entity queries: count and projection queries cannot fetch.
+	 */
+	public static Specification<Product> fetchCategory() {
+		return (root, query, cb) -> {
+			if (Product.class.equals(query.getResultType())) {
+				root.fetch("category", JoinType.LEFT);
+			}
+			return null;
+		};
+	}
+
+	/**
+	 * Columns of a {@link ProductRow}, the category joined in only for its name
+	 */
+	public static List<Selection<?>> rowColumns(Root<Product> root) {
+		Join<Product, Category> category = root.join("category", JoinType.LEFT);
+		return List.of(root.get("id"), root.get("name"), root.get("image"), root.get("price"), root.get("amount"),
+				root.get("available"), category.get("name"));
+	}
+
+	/**
+	 * Combine all storefront / dashboard filters into one specification
+	 */
+	public static Specification<Product> filter(String keyword, String categoryId, Boolean available) {
+		return Specification.where(fetchCategory())
+				.and(nameContains(keyword))
+				.and(inCategory(categoryId))
+				.and(isAvailable(available));
+	}
+}
@@ -3,6 +3,9 @@ package poly.edu.models.services;
 import java.util.List;
 
 import poly.edu.models.entities.Account;
+import poly.edu.models.projections.AccountRow;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 
 public interface AccountServices {
 
@@ -15,4 +18,8 @@ public interface AccountServices {
     Account findById(String username);
     
     List<Account> filter(String keyword, Boolean activated, Boolean admin);
+    
+    CursorPage<Account> scroll(String keyword, Boolean activated, Boolean admin, Cursor cursor, int size);
+    
+    CursorPage<AccountRow> scrollRows(String keyword, Boolean activated, Boolean admin, Cursor cursor, int size);
 }
@@ -0,0 +1,266 @@
+package poly.edu.models.services;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import poly.edu.models.entities.Order;
+import poly.edu.models.entities.OrderDetail;
+import poly.edu.models.repositories.ProductRepository;
+import poly.edu.models.repositories.ProductSaleRepository;
+
+/**
+ * Best-seller rankings, overall and per category, over rolling windows.
+ *
+ * Sales are booked per product and day in the ProductSales summary table, in
+ * the same transaction as the order write, so rankings never aggregate the
+ * OrderDetails table on a request. The ranked lists themselves are kept in
+ * memory as an immutable snapshot: updated after every committed sale, and
+ * reloaded from the summary table when the day changes (the 7 / 30 day windows
+ * slide).
+ */
+@Service
+public class BestSellerRanking {
+
+	public enum Window {
+		WEEK(7), MONTH(30), ALL(0);
+
+		final int days;
+
+		Window(int days) {
+			this.days = days;
+		}
+	}
+
+	/** Window used by the "bestseller" sort option */
+	public static final Window DEFAULT_WINDOW = Window.MONTH;
+
+	@Autowired
+	ProductSaleRepository productSaleRepository;
+
+	@Autowired
+	ProductRepository productRepository;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	private volatile Rankings current;
+
+	/**
+	 * Whether an order in this status counts as sold
+	 */
+	public static boolean counts(String status) {
+		return !"Cancelled".equalsIgnoreCase(status);
+	}
+
+	/**
+	 * Book an order's quantities in the summary table. Joins the caller's
+	 * transaction; memory is updated after it commits.
+	 *
+	 * @param order the order, with its details
+	 * @param sign  1 when the order starts counting, -1 when it stops (cancelled)
+	 */
+	public void record(Order order, int sign) {
+		LocalDate day = order.getCreateDate() != null ? order.getCreateDate() : LocalDate.now();
+		Map<Integer, Integer> quantities = new HashMap<>();
+		for (OrderDetail od : order.getOrderDetails()) {
+			quantities.merge(od.getProduct().getId(), sign * od.getQuantity(), Integer::sum);
+		}
+		quantities.forEach((productId, quantity) -> productSaleRepository.addQuantity(productId, day, quantity));
+		eventPublisher.publishEvent(new ProductSalesEvent(day, quantities));
+	}
+
+	/**
+	 * Product ids with sales in the window, best first (quantity, then newest)
+	 *
+	 * @param categoryId the category, or null for the whole catalog
+	 */
+	public List<Integer> ranking(String categoryId, Window window) {
+		Rankings rankings = rankings();
+		Map<String, List<Integer>> lists = rankings.ranked.get(window);
+		return lists.getOrDefault(categoryId == null ? "" : categoryId, List.of());
+	}
+
+	/**
+	 * Quantity of a product sold in the window
+	 */
+	public long sold(Integer productId, Window window) {
+		return rankings().sold.get(window).getOrDefault(productId, 0L);
+	}
+
+	/**
+	 * Order items by best-seller rank: products sold in the window first, the rest
+	 * keep their relative order (typically newest first)
+	 *
+	 * @param items      the items to sort
+	 * @param id         product id of an item
+	 * @param categoryId the category all items belong to, or null
+	 */
+	public <T> List<T> sort(List<T> items, Function<T, Integer> id, String categoryId, Window window) {
+		Map<Integer, T> byId = new HashMap<>();
+		for (T item : items) {
+			byId.put(id.apply(item), item);
+		}
+		List<T> result = new ArrayList<>(items.size());
+		Set<Integer> ranked = new HashSet<>();
+		for (Integer productId : ranking(categoryId, window)) {
+			T item = byId.get(productId);
+			if (item != null) {
+				result.add(item);
+				ranked.add(productId);
+			}
+		}
+		for (T item : items) {
+			if (!ranked.contains(id.apply(item))) {
+				result.add(item);
+			}
+		}
+		return result;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public synchronized void onSales(ProductSalesEvent event) {
+		Rankings rankings = current;
+		if (rankings == null) {
+			return; // the first read loads the summary table anyway
+		}
+		if (!rankings.day.equals(LocalDate.now())) {
+			reload();
+			return;
+		}
+		Map<Window, Map<Integer, Long>> sold = new EnumMap<>(Window.class);
+		for (Window window : Window.values()) {
+			Map<Integer, Long> counts = new HashMap<>(rankings.sold.get(window));
+			if (window.days == 0 || !event.saleDate().isBefore(rankings.day.minusDays(window.days - 1))) {
+				event.quantities().forEach((productId, quantity) -> counts.merge(productId, (long) quantity, Long::sum));
+			}
+			sold.put(window, counts);
+		}
+		current = new Rankings(rankings.day, sold, rankings.categoryOf);
+	}
+
+	/**
+	 * Products moved between categories change the per-category lists. A product
+	 * write reads that product's category only; category writes reload the
+	 * (id, category) pairs.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public synchronized void onCatalogChanged(CatalogChangedEvent event) {
+		Rankings rankings = current;
+		if (rankings == null) {
+			return;
+		}
+		if (event.productId() == null) {
+			current = new Rankings(rankings.day, rankings.sold, categories());
+			return;
+		}
+		String categoryId = productRepository.findCategoryIdById(event.productId());
+		if (Objects.equals(categoryId, rankings.categoryOf.get(event.productId()))) {
+			return;
+		}
+		Map<Integer, String> categoryOf = new HashMap<>(rankings.categoryOf);
+		if (categoryId == null) {
+			categoryOf.remove(event.productId());
+		} else {
+			categoryOf.put(event.productId(), categoryId);
+		}
+		current = new Rankings(rankings.day, rankings.sold, categoryOf);
+	}
+
+	/**
+	 * Reload every window from the summary table; runs at midnight so the rolling
+	 * windows move on
+	 */
+	@Scheduled(cron = "0 0 0 * * *")
+	public synchronized void reload() {
+		if (productSaleRepository.count() == 0) {
+			productSaleRepository.backfillFromOrders();
+		}
+		LocalDate today = LocalDate.now();
+		Map<Window, Map<Integer, Long>> sold = new EnumMap<>(Window.class);
+		for (Window window : Window.values()) {
+			List<Object[]> rows = window.days == 0 ? productSaleRepository.sumQuantity()
+					: productSaleRepository.sumQuantitySince(today.minusDays(window.days - 1));
+			Map<Integer, Long> counts = new HashMap<>();
+			for (Object[] row : rows) {
+				counts.put(((Number) row[0]).intValue(), ((Number) row[1]).longValue());
+			}
+			sold.put(window, counts);
+		}
+		current = new Rankings(today, sold, categories());
+	}
+
+	private Map<Integer, String> categories() {
+		Map<Integer, String> categoryOf = new HashMap<>();
+		for (Object[] row : productRepository.findCategoryIds()) {
+			categoryOf.put((Integer) row[0], (String) row[1]);
+		}
+		return categoryOf;
+	}
+
+	private Rankings rankings() {
+		Rankings rankings = current;
+		if (rankings == null || !rankings.day.equals(LocalDate.now())) {
+			synchronized (this) {
+				rankings = current;
+				if (rankings == null || !rankings.day.equals(LocalDate.now())) {
+					reload();
+					rankings = current;
+				}
+			}
+		}
+		return rankings;
+	}
+
+	/**
+	 * Immutable quantities and ranked lists of every window, keyed by category id
+	 * ("" is the whole catalog)
+	 */
+	private static final class Rankings {
+
+		final LocalDate day;
+		final Map<Window, Map<Integer, Long>> sold;
+		final Map<Integer, String> categoryOf;
+		final Map<Window, Map<String, List<Integer>>> ranked;
+
+		Rankings(LocalDate day, Map<Window, Map<Integer, Long>> sold, Map<Integer, String> categoryOf) {
+			this.day = day;
+			this.sold = sold;
+			this.categoryOf = categoryOf;
+			this.ranked = new EnumMap<>(Window.class);
+			for (Window window : Window.values()) {
+				Map<Integer, Long> counts = sold.get(window);
+				List<Integer> overall = counts.entrySet().stream()
+						.filter(e -> e.getValue() > 0)
+						.sorted(Map.Entry.<Integer, Long>comparingByValue(Comparator.reverseOrder())
+								.thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+						.map(Map.Entry::getKey)
+						.toList();
+				Map<String, List<Integer>> lists = new HashMap<>();
+				lists.put("", overall);
+				for (Integer productId : overall) {
+					String categoryId = categoryOf.get(productId);
+					if (categoryId != null) {
+						lists.computeIfAbsent(categoryId, k -> new ArrayList<>()).add(productId);
+					}
+				}
+				lists.replaceAll((k, v) -> List.copyOf(v));
+				ranked.put(window, lists);
+			}
+		}
+	}
+}
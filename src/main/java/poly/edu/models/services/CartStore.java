@@ -0,0 +1,251 @@
+package poly.edu.models.services;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import poly.edu.models.cart.Cart;
+
+/**
+ * Carts of logged-in customers, kept in Carts / CartItems by username so they
+ * survive logout, an expired session or a change of device.
+ *
+ * While the customer is browsing, the cart in the session is the one in use;
+ * every change is also handed to this store. Changes are written behind: the
+ * latest cart of each customer waits in memory and is written every
+ * cart.store.flush-delay, so a run of quantity changes on /cart/update costs
+ * one write. A crash loses at most that delay, and the session still holds the
+ * cart.
+ *
+ * Sessions are shared without sticky routing, so two nodes may each hold a
+ * pending cart of the same customer and flush them in any order. Every cart
+ * carries the time it was changed, and a write only replaces a stored cart
+ * that is older (Carts.UpdatedAt; node clocks are kept in sync). An emptied
+ * cart keeps its Carts row for that reason. Reads when a session has no cart
+ * come from a local cache whose entries expire after cart.store.cache-ttl;
+ * the merge at login always reads the table.
+ */
+@Service
+public class CartStore {
+
+	private static final Logger log = LoggerFactory.getLogger(CartStore.class);
+
+	private static final String SELECT_SQL = "SELECT c.UpdatedAt, i.ProductId, i.Quantity, i.Price FROM Carts c "
+			+ "LEFT JOIN CartItems i ON i.Username = c.Username WHERE c.Username = ? ORDER BY i.Position";
+
+	private static final String DELETE_ITEMS_SQL = "DELETE FROM CartItems WHERE Username = ?";
+
+	private static final String INSERT_ITEM_SQL = "INSERT INTO CartItems (Username, Position, ProductId, Quantity, Price) VALUES (?, ?, ?, ?, ?)";
+
+	private static final String UPDATE_CART_SQL = "UPDATE Carts SET UpdatedAt = ? WHERE Username = ? AND UpdatedAt < ?";
+
+	private static final String INSERT_CART_SQL = "INSERT INTO Carts (Username, UpdatedAt) SELECT ?, ? "
+			+ "WHERE NOT EXISTS (SELECT 1 FROM Carts WITH (UPDLOCK, HOLDLOCK) WHERE Username = ?)";
+
+	@Autowired
+	JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	TransactionTemplate transactionTemplate;
+
+	@Value("${cart.store.cache-size:10000}")
+	long cacheSize;
+
+	@Value("${cart.store.cache-ttl:5m}")
+	Duration cacheTtl;
+
+	private Cache<String, Saved> cache;
+
+	// Latest cart of each customer not written yet
+	private final Map<String, Saved> pending = new ConcurrentHashMap<>();
+
+	private final LongAdder saves = new LongAdder();
+
+	private final LongAdder writes = new LongAdder();
+
+	private final LongAdder stale = new LongAdder();
+
+	private final LongAdder failures = new LongAdder();
+
+	/**
+	 * A cart and the time it was changed; never modified once created
+	 */
+	private record Saved(Cart cart, LocalDateTime changedAt) {
+
+		static final Saved NONE = new Saved(new Cart(), LocalDateTime.MIN);
+
+		Saved newer(Saved other) {
+			return other != null && other.changedAt.isAfter(changedAt) ? other : this;
+		}
+	}
+
+	@PostConstruct
+	void init() {
+		cache = Caffeine.newBuilder()
+				.maximumSize(cacheSize)
+				.expireAfterWrite(cacheTtl)
+				.recordStats()
+				.build();
+	}
+
+	/**
+	 * The saved cart of a customer
+	 *
+	 * @return a copy the caller may change, empty when nothing is saved
+	 */
+	public Cart find(String username) {
+		return cache.get(username, this::load).cart().copy();
+	}
+
+	/**
+	 * Save a customer's cart, written at the next flush
+	 */
+	public void save(String username, Cart cart) {
+		Saved saved = new Saved(cart.copy(), LocalDateTime.now());
+		cache.put(username, saved);
+		pending.put(username, saved);
+		saves.increment();
+	}
+
+	/**
+	 * Add the lines of the cart filled before logging in to the saved one, see
+	 * {@link Cart#merge(Cart)}: logging in again on the same session does not
+	 * double a quantity. The saved cart is read from the table (or is this
+	 * node's pending one when newer): another node may have written it since it
+	 * was cached here.
+	 *
+	 * @param cart the session cart, may be null
+	 * @return the merged cart, also saved; lines beyond Cart.MAX_LINES are dropped
+	 */
+	public Cart merge(String username, Cart cart) {
+		Saved latest = load(username).newer(pending.get(username));
+		cache.put(username, latest);
+		Cart merged = latest.cart().copy();
+		if (cart == null || cart.isEmpty()) {
+			return merged;
+		}
+		merged.merge(cart);
+		save(username, merged);
+		return merged;
+	}
+
+	@Scheduled(fixedDelayString = "${cart.store.flush-delay:PT2S}")
+	public synchronized void flush() {
+		for (String username : new ArrayList<>(pending.keySet())) {
+			Saved saved = pending.remove(username);
+			if (saved == null) {
+				continue;
+			}
+			try {
+				if (Boolean.TRUE.equals(transactionTemplate.execute(status -> write(username, saved)))) {
+					writes.increment();
+				} else {
+					// Another node stored a newer cart: read that one next time
+					stale.increment();
+					cache.invalidate(username);
+				}
+			} catch (DataIntegrityViolationException e) {
+				// The account or a product is gone: retrying cannot succeed. The session
+				// cart drops missing products when shown and is saved again then
+				failures.increment();
+				cache.invalidate(username);
+				log.warn("Dropping the cart of {}, it no longer fits the database: {}", username,
+						NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+			} catch (RuntimeException e) {
+				// Retried at the next flush, unless a newer cart is already waiting
+				pending.putIfAbsent(username, saved);
+				failures.increment();
+				log.warn("Cannot save the cart of {}, retrying at the next flush", username, e);
+			}
+		}
+	}
+
+	@PreDestroy
+	void shutdown() {
+		flush();
+	}
+
+	/**
+	 * Saves, writes, stale and failed writes and cache hits, for
+	 * /dashboard/cache/stats
+	 */
+	public Map<String, Object> statistics() {
+		CacheStats stats = cache.stats();
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("saves", saves.sum());
+		statistics.put("writes", writes.sum());
+		statistics.put("stale", stale.sum());
+		statistics.put("failures", failures.sum());
+		statistics.put("pending", pending.size());
+		statistics.put("hits", stats.hitCount());
+		statistics.put("misses", stats.missCount());
+		statistics.put("size", cache.estimatedSize());
+		return statistics;
+	}
+
+	private Saved load(String username) {
+		Cart cart = new Cart();
+		LocalDateTime[] updatedAt = { null };
+		jdbcTemplate.query(SELECT_SQL, rs -> {
+			updatedAt[0] = rs.getObject("UpdatedAt", LocalDateTime.class);
+			int productId = rs.getInt("ProductId");
+			if (!rs.wasNull()) {
+				cart.add(productId, rs.getInt("Quantity"), rs.getDouble("Price"));
+			}
+		}, username);
+		return updatedAt[0] == null ? Saved.NONE : new Saved(cart, updatedAt[0]);
+	}
+
+	/**
+	 * Replace the stored cart, unless the stored one is newer. The whole cart is
+	 * replaced: a handful of rows, and no line-by-line diff to get wrong.
+	 *
+	 * @return false when a newer cart is stored
+	 */
+	private boolean write(String username, Saved saved) {
+		LocalDateTime changedAt = saved.changedAt();
+		int claimed = jdbcTemplate.update(UPDATE_CART_SQL, changedAt, username, changedAt);
+		if (claimed == 0) {
+			claimed = jdbcTemplate.update(INSERT_CART_SQL, username, changedAt, username);
+		}
+		if (claimed == 0) {
+			// Inserted by another node in the meantime
+			claimed = jdbcTemplate.update(UPDATE_CART_SQL, changedAt, username, changedAt);
+		}
+		if (claimed == 0) {
+			return false;
+		}
+		jdbcTemplate.update(DELETE_ITEMS_SQL, username);
+		Cart cart = saved.cart();
+		List<Object[]> items = new ArrayList<>(cart.size());
+		for (int i = 0; i < cart.size(); i++) {
+			items.add(new Object[] { username, i, cart.productId(i), cart.quantity(i), cart.price(i) });
+		}
+		if (!items.isEmpty()) {
+			jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, items);
+		}
+		return true;
+	}
+}
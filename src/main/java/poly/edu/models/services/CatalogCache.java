@@ -0,0 +1,109 @@
+package poly.edu.models.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.persistence.EntityManagerFactory;
+import poly.edu.models.entities.Category;
+import poly.edu.models.entities.Product;
+
+/**
+ * Maintenance and statistics for the Hibernate second-level cache.
+ * 
+ * Entity regions (Product, Category, Discount) and the query cache are kept in
+ * sync by Hibernate itself on every write through JPA. The one thing it cannot
+ * see is the inverse Category.products collection: a product write only
+ * touches the owning side (Product.category), so the cached collection of the
+ * old and new category must be dropped here. Stock taken by checkouts is
+ * written with a native update that Hibernate does not track either, so the
+ * product it changed is evicted here too.
+ */
+@Service
+public class CatalogCache {
+
+	public static final String CATEGORY_PRODUCTS = Category.class.getName() + ".products";
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	/**
+	 * Runs before the other catalog listeners so that they reload through a
+	 * consistent cache
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public void onCatalogChanged(CatalogChangedEvent event) {
+		evictCategoryProducts();
+	}
+
+	/**
+	 * Drop the cached product whose stock a checkout took, once committed
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public void onStockChanged(StockChangedEvent event) {
+		sessionFactory().getCache().evictEntityData(Product.class, event.productId());
+	}
+
+	public void evictCategoryProducts() {
+		sessionFactory().getCache().evictCollectionData(CATEGORY_PRODUCTS);
+	}
+
+	/**
+	 * Drop every cached entity, collection and query result
+	 */
+	public void evictAll() {
+		sessionFactory().getCache().evictAll();
+	}
+
+	/**
+	 * Hit / miss / put counters per region plus totals, for sizing the regions in
+	 * application.conf
+	 */
+	public Map<String, Object> statistics() {
+		Statistics stats = sessionFactory().getStatistics();
+
+		Map<String, Object> regions = new LinkedHashMap<>();
+		for (String name : stats.getSecondLevelCacheRegionNames()) {
+			CacheRegionStatistics region = stats.getCacheRegionStatistics(name);
+			if (region != null) {
+				regions.put(name, region(region.getHitCount(), region.getMissCount(), region.getPutCount(),
+						region.getElementCountInMemory()));
+			}
+		}
+
+		Map<String, Object> result = new LinkedHashMap<>();
+		result.put("enabled", stats.isStatisticsEnabled());
+		result.put("secondLevel", region(stats.getSecondLevelCacheHitCount(), stats.getSecondLevelCacheMissCount(),
+				stats.getSecondLevelCachePutCount(), -1));
+		result.put("query", region(stats.getQueryCacheHitCount(), stats.getQueryCacheMissCount(),
+				stats.getQueryCachePutCount(), -1));
+		result.put("regions", regions);
+		return result;
+	}
+
+	private Map<String, Object> region(long hits, long misses, long puts, long size) {
+		Map<String, Object> region = new LinkedHashMap<>();
+		region.put("hits", hits);
+		region.put("misses", misses);
+		region.put("puts", puts);
+		region.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+		if (size >= 0) {
+			region.put("size", size);
+		}
+		return region;
+	}
+
+	private SessionFactory sessionFactory() {
+		return entityManagerFactory.unwrap(SessionFactory.class);
+	}
+}
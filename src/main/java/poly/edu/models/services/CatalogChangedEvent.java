@@ -0,0 +1,21 @@
+package poly.edu.models.services;
+
+/**
+ * Published by the product / category services whenever catalog data is
+ * written. The {@link CatalogSnapshot} and {@link ProductSearchIndex} update
+ * themselves after the surrounding transaction commits.
+ * 
+ * @param source    "product" or "category"
+ * @param productId id of the product that changed, or null when the change
+ *                  may affect many products (category writes)
+ */
+public record CatalogChangedEvent(String source, Integer productId) {
+
+	public static CatalogChangedEvent product(Integer productId) {
+		return new CatalogChangedEvent("product", productId);
+	}
+
+	public static CatalogChangedEvent category() {
+		return new CatalogChangedEvent("category", null);
+	}
+}
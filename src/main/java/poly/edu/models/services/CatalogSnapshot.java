@@ -0,0 +1,435 @@
+package poly.edu.models.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import poly.edu.models.entities.Category;
+import poly.edu.models.entities.Product;
+import poly.edu.models.repositories.CategoryRepository;
+import poly.edu.models.repositories.ProductRepository;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
+
+/**
+ * Read-only, in-memory view of the catalog used by the storefront.
+ * 
+ * The whole snapshot is immutable and is replaced atomically (copy-on-write)
+ * after every committed product / category write, so readers never lock and
+ * never touch the database. A product write reloads that product only; a
+ * checkout only patches the amount into a copy of the product. The products
+ * handed out are never changed afterwards and must not be changed by callers.
+ * Admin pages keep using the repositories directly because they need managed
+ * entities.
+ */
+@Service
+public class CatalogSnapshot {
+
+	@Autowired
+	ProductRepository productRepository;
+
+	@Autowired
+	CategoryRepository categoryRepository;
+
+	@Autowired
+	ProductSearchIndex productSearchIndex;
+
+	@Autowired
+	BestSellerRanking bestSellerRanking;
+
+	private final AtomicReference<Snapshot> current = new AtomicReference<>();
+
+	/**
+	 * Update the snapshot once the write that triggered the event has committed
+	 * (or immediately when it was not part of a transaction)
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public synchronized void onCatalogChanged(CatalogChangedEvent event) {
+		Snapshot snapshot = current.get();
+		if (snapshot == null) {
+			return; // loaded on first use
+		}
+		if (event.productId() == null) {
+			refresh();
+			return;
+		}
+		Product product = productRepository.findById(event.productId()).orElse(null);
+		current.set(snapshot.with(event.productId(), product));
+	}
+
+	/**
+	 * A checkout took stock: a copy of the product with the new amount replaces
+	 * it. Amounts only go down between two reloads, so of two checkouts committed
+	 * out of order the lower amount wins.
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public synchronized void onStockChanged(StockChangedEvent event) {
+		Snapshot snapshot = current.get();
+		Product product = snapshot == null ? null : snapshot.productsById.get(event.productId());
+		if (product != null && (product.getAmount() == null || event.amount() < product.getAmount())) {
+			Product copy = new Product();
+			BeanUtils.copyProperties(product, copy);
+			copy.setAmount(event.amount());
+			current.set(snapshot.with(copy.getId(), copy));
+		}
+	}
+
+	/**
+	 * Reload products and categories and swap in a new snapshot
+	 */
+	public synchronized void refresh() {
+		current.set(new Snapshot(productRepository.findAll(), categoryRepository.findAll()));
+	}
+
+	public List<Category> findAllCategories() {
+		return snapshot().categories;
+	}
+
+	public Category findCategoryById(String id) {
+		return id == null ? null : snapshot().categoriesById.get(id);
+	}
+
+	public List<Product> findAll() {
+		return snapshot().all.byIdDesc;
+	}
+
+	public Product findById(Integer id) {
+		return id == null ? null : snapshot().productsById.get(id);
+	}
+
+	public List<Product> findByCategory(String categoryId) {
+		Index index = snapshot().byCategory.get(categoryId);
+		return index == null ? List.of() : index.byIdDesc;
+	}
+
+	public List<Product> findAvailable() {
+		return snapshot().available;
+	}
+
+	/**
+	 * Filter, sort and keyset-page the catalog from memory. Mirrors
+	 * {@link ProductServices#scroll(String, String, Boolean, String, Cursor, int)};
+	 * without an explicit sort, keyword results are ranked by relevance.
+	 */
+	public CursorPage<Product> scroll(String keyword, String categoryId, Boolean available, String sortBy,
+			Cursor cursor, int size) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Size must be > 0");
+		}
+		Snapshot snapshot = snapshot();
+
+		Index index = snapshot.all;
+		if (categoryId != null && !categoryId.isBlank()) {
+			index = snapshot.byCategory.get(categoryId);
+			if (index == null) {
+				return new CursorPage<>(List.of(), null, null);
+			}
+		}
+
+		List<Product> source = index.sorted(sortBy);
+		if ("bestseller".equals(sortBy)) {
+			source = bestSellerRanking.sort(source, Product::getId, index == snapshot.all ? null : categoryId,
+					BestSellerRanking.DEFAULT_WINDOW);
+		}
+		Map<Integer, Double> hits = null;
+		Set<Integer> matching = null;
+		boolean relevance = false;
+		if (keyword != null && !keyword.isBlank()) {
+			if (sortBy == null || sortBy.isBlank()) {
+				// No explicit sort: most relevant products first, as many as are ranked
+				relevance = true;
+				hits = productSearchIndex.search(keyword);
+				matching = hits.keySet();
+				source = new ArrayList<>(hits.size());
+				for (Integer id : hits.keySet()) {
+					Product p = snapshot.productsById.get(id);
+					if (p != null) {
+						source.add(p);
+					}
+				}
+			} else {
+				// Sorted otherwise: every match, not only the best ranked
+				matching = productSearchIndex.matchingIds(keyword);
+			}
+		}
+
+		List<Product> matched = source;
+		if (matching != null || available != null) {
+			matched = new ArrayList<>();
+			for (Product p : source) {
+				if (available != null && !available.equals(p.getAvailable())) {
+					continue;
+				}
+				if (matching != null && !matching.contains(p.getId())) {
+					continue;
+				}
+				// Relevance-ordered hits span the whole catalog
+				if (index != snapshot.all && !index.contains(p)) {
+					continue;
+				}
+				matched.add(p);
+			}
+		}
+
+		// Locate the cursor with a binary search: the list is sorted in cursor order
+		KeyOrder order = new KeyOrder(sortBy, relevance ? hits : null,
+				id -> bestSellerRanking.sold(id, BestSellerRanking.DEFAULT_WINDOW));
+		int total = matched.size();
+		int start = 0;
+		int end = Math.min(size, total);
+		if (!cursor.isInitial() && order.accepts(cursor)) {
+			if (cursor.isBackward()) {
+				end = firstIndex(matched, p -> order.compareToCursor(p, cursor) >= 0);
+				start = Math.max(0, end - size);
+			} else {
+				start = firstIndex(matched, p -> order.compareToCursor(p, cursor) > 0);
+				end = Math.min(start + size, total);
+			}
+		}
+
+		List<Product> content = matched.subList(start, end);
+		String next = null;
+		String previous = null;
+		if (!content.isEmpty()) {
+			if (end < total) {
+				next = Cursor.after(order.keysOf(content.get(content.size() - 1))).encode();
+			}
+			if (start > 0) {
+				previous = Cursor.before(order.keysOf(content.get(0))).encode();
+			}
+		}
+		return new CursorPage<>(content, next, previous);
+	}
+
+	/**
+	 * Index of the first element matching a predicate that is false for a prefix of
+	 * the list and true for the rest
+	 */
+	private static int firstIndex(List<Product> list, Predicate<Product> predicate) {
+		int low = 0;
+		int high = list.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (predicate.test(list.get(mid))) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Cursor keys of one storefront ordering: (price, id), (score, id), (sold, id)
+	 * or (id)
+	 */
+	private static final class KeyOrder {
+
+		private final String sortBy;
+		private final Map<Integer, Double> scores;
+		private final ToLongFunction<Integer> sold;
+
+		KeyOrder(String sortBy, Map<Integer, Double> scores, ToLongFunction<Integer> sold) {
+			this.sortBy = sortBy;
+			this.scores = scores;
+			this.sold = sold;
+		}
+
+		private String key() {
+			if (scores != null) {
+				return "score";
+			}
+			if ("price-asc".equals(sortBy) || "price-desc".equals(sortBy)) {
+				return "price";
+			}
+			if ("bestseller".equals(sortBy)) {
+				return "sold";
+			}
+			return null;
+		}
+
+		Map<String, Object> keysOf(Product p) {
+			Map<String, Object> keys = new LinkedHashMap<>();
+			if ("score".equals(key())) {
+				keys.put("score", scores.get(p.getId()));
+			} else if ("price".equals(key())) {
+				keys.put("price", priceOf(p));
+			} else if ("sold".equals(key())) {
+				keys.put("sold", sold.applyAsLong(p.getId()));
+			}
+			keys.put("id", p.getId());
+			return keys;
+		}
+
+		/**
+		 * Whether the cursor was produced by this ordering (the sort may have been
+		 * changed since)
+		 */
+		boolean accepts(Cursor cursor) {
+			Map<String, Object> keys = cursor.getKeys();
+			String key = key();
+			if (!(keys.get("id") instanceof Integer)) {
+				return false;
+			}
+			if (key == null) {
+				return keys.size() == 1;
+			}
+			return "sold".equals(key) ? keys.get(key) instanceof Long : keys.get(key) instanceof Double;
+		}
+
+		/**
+		 * Positive when the product comes after the cursor position, negative when it
+		 * comes before, 0 for the cursor row itself
+		 */
+		int compareToCursor(Product p, Cursor cursor) {
+			Map<String, Object> keys = cursor.getKeys();
+			int result = 0;
+			if ("score".equals(key())) {
+				result = Double.compare((Double) keys.get("score"), scores.get(p.getId()));
+			} else if ("price-asc".equals(sortBy)) {
+				result = Double.compare(priceOf(p), (Double) keys.get("price"));
+			} else if ("price-desc".equals(sortBy)) {
+				result = Double.compare((Double) keys.get("price"), priceOf(p));
+			} else if ("bestseller".equals(sortBy)) {
+				result = Long.compare((Long) keys.get("sold"), sold.applyAsLong(p.getId()));
+			}
+			if (result != 0) {
+				return result;
+			}
+			// Ties (and the default order) are newest first
+			return Integer.compare((Integer) keys.get("id"), p.getId());
+		}
+
+		// Products without a price sort last in both directions, like the Index comparators
+		private double priceOf(Product p) {
+			if (p.getPrice() == null) {
+				return "price-desc".equals(sortBy) ? -Double.MAX_VALUE : Double.MAX_VALUE;
+			}
+			return p.getPrice();
+		}
+	}
+
+	private Snapshot snapshot() {
+		Snapshot snapshot = current.get();
+		if (snapshot == null) {
+			synchronized (this) {
+				snapshot = current.get();
+				if (snapshot == null) {
+					refresh();
+					snapshot = current.get();
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Products of one scope (whole catalog or one category) pre-sorted for every
+	 * storefront sort option
+	 */
+	private static final class Index {
+
+		private static final Comparator<Product> ID_DESC = Comparator.comparing(Product::getId,
+				Comparator.nullsLast(Comparator.reverseOrder()));
+
+		private static final Comparator<Product> PRICE_ASC = Comparator
+				.comparing(Product::getPrice, Comparator.nullsLast(Comparator.<Double>naturalOrder()))
+				.thenComparing(ID_DESC);
+
+		private static final Comparator<Product> PRICE_DESC = Comparator
+				.comparing(Product::getPrice, Comparator.nullsLast(Comparator.<Double>reverseOrder()))
+				.thenComparing(ID_DESC);
+
+		final List<Product> byIdDesc;
+		final List<Product> byPriceAsc;
+		final List<Product> byPriceDesc;
+		final Set<Integer> ids;
+
+		Index(List<Product> products) {
+			this.byIdDesc = products.stream().sorted(ID_DESC).toList();
+			this.byPriceAsc = products.stream().sorted(PRICE_ASC).toList();
+			this.byPriceDesc = products.stream().sorted(PRICE_DESC).toList();
+			this.ids = products.stream().map(Product::getId).collect(Collectors.toUnmodifiableSet());
+		}
+
+		boolean contains(Product product) {
+			return ids.contains(product.getId());
+		}
+
+		List<Product> sorted(String sortBy) {
+			if ("price-asc".equals(sortBy)) {
+				return byPriceAsc;
+			}
+			if ("price-desc".equals(sortBy)) {
+				return byPriceDesc;
+			}
+			return byIdDesc;
+		}
+	}
+
+	private static final class Snapshot {
+
+		final List<Category> categories;
+		final Map<String, Category> categoriesById;
+		final Map<Integer, Product> productsById;
+		final Map<String, Index> byCategory;
+		final List<Product> available;
+		final Index all;
+
+		Snapshot(List<Product> products, List<Category> categories) {
+			this.categories = List.copyOf(categories);
+
+			Map<String, Category> categoriesById = new HashMap<>();
+			for (Category c : categories) {
+				categoriesById.put(c.getId(), c);
+			}
+			this.categoriesById = Map.copyOf(categoriesById);
+
+			Map<Integer, Product> productsById = new HashMap<>();
+			Map<String, List<Product>> grouped = new HashMap<>();
+			for (Product p : products) {
+				productsById.put(p.getId(), p);
+				if (p.getCategory() != null && p.getCategory().getId() != null) {
+					grouped.computeIfAbsent(p.getCategory().getId(), k -> new ArrayList<>()).add(p);
+				}
+			}
+			this.productsById = Map.copyOf(productsById);
+
+			Map<String, Index> byCategory = new HashMap<>();
+			grouped.forEach((categoryId, list) -> byCategory.put(categoryId, new Index(list)));
+			this.byCategory = Map.copyOf(byCategory);
+
+			this.all = new Index(products);
+			this.available = all.byIdDesc.stream().filter(p -> Boolean.TRUE.equals(p.getAvailable())).toList();
+		}
+
+		/**
+		 * A snapshot where one product is replaced, added or (when null) removed
+		 */
+		Snapshot with(Integer id, Product product) {
+			List<Product> products = new ArrayList<>(all.byIdDesc.size() + 1);
+			for (Product p : all.byIdDesc) {
+				if (!p.getId().equals(id)) {
+					products.add(p);
+				}
+			}
+			if (product != null) {
+				products.add(product);
+			}
+			return new Snapshot(products, categories);
+		}
+	}
+}
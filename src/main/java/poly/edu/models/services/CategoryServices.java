@@ -3,6 +3,8 @@ package poly.edu.models.services;
 import java.util.List;
 
 import poly.edu.models.entities.Category;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 
 public interface CategoryServices {
 	
@@ -15,4 +17,6 @@ public interface CategoryServices {
     Category findById(String id);
     
     List<Category> filter(String keyword);
+    
+    CursorPage<Category> scroll(String keyword, Cursor cursor, int size);
 }
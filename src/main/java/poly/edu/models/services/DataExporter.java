@@ -0,0 +1,197 @@
+package poly.edu.models.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.temporal.TemporalAccessor;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Streams whole tables to an output stream as CSV or JSON.
+ *
+ * Rows are read through a Hibernate StatelessSession with a forward-only
+ * scroll and a tuned fetch size, and each query selects scalar columns only, so
+ * nothing is kept in a persistence context: memory stays the same for ten rows
+ * or ten million. Each export holds one connection for its whole duration, so
+ * the number of concurrent exports is capped to keep the pool available for
+ * page requests.
+ */
+@Service
+public class DataExporter {
+
+	/**
+	 * One exportable table: column names and a scalar query returning them in
+	 * that order
+	 */
+	private record Export(List<String> columns, String query) {
+	}
+
+	private static final Map<String, Export> EXPORTS = Map.of(
+			"products", new Export(
+					List.of("id", "name", "image", "price", "amount", "createDate", "available", "categoryId", "categoryName"),
+					"SELECT p.id, p.name, p.image, p.price, p.amount, p.createDate, p.available, c.id, c.name "
+							+ "FROM Product p LEFT JOIN p.category c ORDER BY p.id"),
+			"orders", new Export(
+					List.of("id", "createDate", "status", "address", "username", "fullname", "phone", "items", "total"),
+					"SELECT o.id, o.createDate, o.status, o.address, a.username, a.fullname, a.phone, "
+							+ "(SELECT SUM(od.quantity) FROM OrderDetail od WHERE od.order = o), "
+							+ "(SELECT SUM(od.price * od.quantity) FROM OrderDetail od WHERE od.order = o) "
+							+ "FROM Order o JOIN o.account a ORDER BY o.id"),
+			// Never export passwords
+			"accounts", new Export(
+					List.of("username", "fullname", "email", "phone", "address", "activated", "admin"),
+					"SELECT a.username, a.fullname, a.email, a.phone, a.address, a.activated, a.admin "
+							+ "FROM Account a ORDER BY a.username"));
+
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	@Value("${export.fetch-size:1000}")
+	int fetchSize;
+
+	@Value("${export.max-concurrent:2}")
+	int maxConcurrent;
+
+	private Semaphore running;
+
+	@PostConstruct
+	void init() {
+		running = new Semaphore(maxConcurrent);
+	}
+
+	public boolean supports(String type) {
+		return EXPORTS.containsKey(type);
+	}
+
+	/**
+	 * Try to reserve an export slot; every successful call must be followed by
+	 * {@link #release()}
+	 */
+	public boolean tryAcquire() {
+		return running.tryAcquire();
+	}
+
+	public void release() {
+		running.release();
+	}
+
+	/**
+	 * Write every row of the table to the stream
+	 *
+	 * @param type   products, orders or accounts
+	 * @param format csv or json
+	 */
+	public void export(String type, String format, OutputStream out) throws IOException {
+		Export export = EXPORTS.get(type);
+		if (export == null) {
+			throw new IllegalArgumentException("Unknown export: " + type);
+		}
+		SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+		try (StatelessSession session = sessionFactory.openStatelessSession();
+				ScrollableResults<Object[]> rows = session.createQuery(export.query(), Object[].class)
+						.setFetchSize(fetchSize)
+						.setReadOnly(true)
+						.scroll(ScrollMode.FORWARD_ONLY)) {
+			if ("json".equals(format)) {
+				writeJson(export, rows, out);
+			} else {
+				writeCsv(export, rows, out);
+			}
+		}
+	}
+
+	private void writeCsv(Export export, ScrollableResults<Object[]> rows, OutputStream out) throws IOException {
+		Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+		// Byte order mark so Excel opens the Vietnamese text as UTF-8
+		writer.write('\uFEFF');
+		writer.write(String.join(",", export.columns()));
+		writer.write("\r\n");
+		while (rows.next()) {
+			Object[] row = rows.get();
+			for (int i = 0; i < row.length; i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				writer.write(csv(row[i]));
+			}
+			writer.write("\r\n");
+		}
+		writer.flush();
+	}
+
+	private void writeJson(Export export, ScrollableResults<Object[]> rows, OutputStream out) throws IOException {
+		JsonGenerator json = new JsonFactory().createGenerator(out, JsonEncoding.UTF8);
+		json.writeStartArray();
+		while (rows.next()) {
+			Object[] row = rows.get();
+			json.writeStartObject();
+			for (int i = 0; i < row.length; i++) {
+				String column = export.columns().get(i);
+				Object value = row[i];
+				if (value == null) {
+					json.writeNullField(column);
+				} else if (value instanceof Number number) {
+					json.writeFieldName(column);
+					json.writeNumber(text(number));
+				} else if (value instanceof Boolean bool) {
+					json.writeBooleanField(column, bool);
+				} else {
+					json.writeStringField(column, text(value));
+				}
+			}
+			json.writeEndObject();
+		}
+		json.writeEndArray();
+		json.flush();
+	}
+
+	private static String text(Object value) {
+		if (value instanceof Double || value instanceof Float) {
+			// Prices: 1500000 rather than 1.5E6
+			return BigDecimal.valueOf(((Number) value).doubleValue()).stripTrailingZeros().toPlainString();
+		}
+		if (value instanceof TemporalAccessor) {
+			return value.toString(); // ISO-8601
+		}
+		return String.valueOf(value);
+	}
+
+	/**
+	 * A CSV cell. Text a spreadsheet would run as a formula (a customer named
+	 * "=HYPERLINK(...)") is prefixed with a quote so it opens as plain text;
+	 * numbers are left alone, a negative amount is not a formula.
+	 */
+	static String csv(Object value) {
+		if (value == null) {
+			return "";
+		}
+		String text = text(value);
+		if (!(value instanceof Number) && !text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0) {
+			text = "'" + text;
+		}
+		if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+			return '"' + text.replace("\"", "\"\"") + '"';
+		}
+		return text;
+	}
+}
@@ -3,6 +3,8 @@ package poly.edu.models.services;
 import java.util.List;
 
 import poly.edu.models.entities.Discount;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 
 public interface DiscountServices {
 	
@@ -15,4 +17,6 @@ public interface DiscountServices {
     Discount findById(Integer id);
     
     List<Discount> filter(String keyword, String discountType, Boolean active);
+    
+    CursorPage<Discount> scroll(String keyword, String discountType, Boolean active, Cursor cursor, int size);
 }
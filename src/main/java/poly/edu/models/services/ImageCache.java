@@ -0,0 +1,181 @@
+package poly.edu.models.services;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import jakarta.annotation.PostConstruct;
+import poly.edu.models.services.ImageManifest.Entry;
+import poly.edu.utils.ImageUtil;
+
+/**
+ * Bytes of the most requested images, held off-heap within a fixed memory
+ * budget, in front of the {@link ImageManifest}.
+ *
+ * Caffeine bounds the cache by total size and decides what stays with
+ * W-TinyLFU: a newcomer only displaces a cached image if it has been asked for
+ * more often, so a crawl through the whole catalog cannot flush the hero and
+ * best-seller photos. A file is only copied into memory on its second miss
+ * within the last {@link #RECENT_MISSES} misses: the first one is sent from
+ * the file with sendfile. A crawl therefore does not allocate a direct buffer
+ * per image only for the policy to reject it, which would leave off-heap
+ * memory to the garbage collector, beyond image.cache.max-size. A hit is answered without touching the file system, not
+ * even to stat the file: every write and removal in the upload directory goes
+ * through {@link ImageUtil}, which tells this cache to drop the name. Bundled
+ * photos only change with a new release.
+ */
+@Service
+public class ImageCache {
+
+	/**
+	 * An image to serve
+	 *
+	 * @param bytes its content, read-only, or null when it is not cached (too
+	 *              large, or unreadable) and must be sent from the file
+	 */
+	public record Image(Entry entry, ByteBuffer bytes) {
+	}
+
+	/** Names of the images missed lately, remembered to admit them on their next miss */
+	static final int RECENT_MISSES = 10_000;
+
+	@Autowired
+	ImageManifest imageManifest;
+
+	@Value("${image.cache.max-size:64MB}")
+	DataSize maxSize;
+
+	// Larger files are sent from disk with sendfile, which is as cheap
+	@Value("${image.cache.max-entry-size:1MB}")
+	DataSize maxEntrySize;
+
+	private Cache<String, Image> cache;
+
+	// Missed once, not read into memory yet
+	private Cache<String, Boolean> missedOnce;
+
+	// Bumped on every invalidation, so a load racing with a change is not kept
+	private final AtomicLong invalidations = new AtomicLong();
+
+	private final LongAdder bypassed = new LongAdder();
+
+	private final LongAdder deferred = new LongAdder();
+
+	@PostConstruct
+	void init() {
+		cache = Caffeine.newBuilder()
+				.maximumWeight(maxSize.toBytes())
+				.weigher((String name, Image image) -> image.bytes().capacity())
+				.recordStats()
+				.build();
+		missedOnce = Caffeine.newBuilder()
+				.maximumSize(RECENT_MISSES)
+				.build();
+		ImageUtil.addListener(this::invalidate);
+	}
+
+	/**
+	 * Look an image up, from memory when it is cached
+	 *
+	 * @param name e.g. "products/ab/cd/abcd....jpg"
+	 * @return the image, or null when there is no such image
+	 */
+	public Image find(String name) {
+		Image image = cache.getIfPresent(name);
+		if (image != null) {
+			return image;
+		}
+		long version = invalidations.get();
+		Entry entry = imageManifest.find(name);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.length() > maxEntrySize.toBytes()) {
+			bypassed.increment();
+			return new Image(entry, null);
+		}
+		if (missedOnce.asMap().remove(name) == null) {
+			// First sight: most of a crawl is never asked for again
+			missedOnce.put(name, Boolean.TRUE);
+			deferred.increment();
+			return new Image(entry, null);
+		}
+		ByteBuffer bytes = read(entry);
+		if (bytes == null) {
+			return new Image(entry, null);
+		}
+		image = new Image(entry, bytes);
+		// Admission is up to the policy: a one-off request is evicted again first
+		cache.put(name, image);
+		if (invalidations.get() != version) {
+			cache.invalidate(name);
+		}
+		return image;
+	}
+
+	public void invalidate(String name) {
+		invalidations.incrementAndGet();
+		cache.invalidate(name);
+	}
+
+	public void invalidateAll() {
+		invalidations.incrementAndGet();
+		cache.invalidateAll();
+	}
+
+	/**
+	 * Hit ratio, evictions and memory use, for /dashboard/cache/stats
+	 */
+	public Map<String, Object> statistics() {
+		CacheStats stats = cache.stats();
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("hits", stats.hitCount());
+		statistics.put("misses", stats.missCount());
+		statistics.put("hitRatio", stats.requestCount() == 0 ? 0.0 : stats.hitRate());
+		statistics.put("evictions", stats.evictionCount());
+		statistics.put("tooLarge", bypassed.sum());
+		statistics.put("firstMisses", deferred.sum());
+		statistics.put("size", cache.estimatedSize());
+		statistics.put("bytes", cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0))
+				.orElse(0L));
+		statistics.put("maxBytes", maxSize.toBytes());
+		return statistics;
+	}
+
+	/**
+	 * Copy a file into direct memory
+	 *
+	 * @return the bytes, read-only, or null when the file is gone or no longer
+	 *         matches the entry
+	 */
+	private static ByteBuffer read(Entry entry) {
+		try (FileChannel file = FileChannel.open(entry.file(), StandardOpenOption.READ)) {
+			if (file.size() != entry.length()) {
+				return null;
+			}
+			ByteBuffer bytes = ByteBuffer.allocateDirect((int) entry.length());
+			while (bytes.hasRemaining()) {
+				if (file.read(bytes) < 0) {
+					return null;
+				}
+			}
+			return bytes.flip().asReadOnlyBuffer();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
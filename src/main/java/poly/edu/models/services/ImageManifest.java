@@ -0,0 +1,166 @@
+package poly.edu.models.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Service;
+
+import poly.edu.utils.ImageUtil;
+
+/**
+ * In-memory manifest of the product images served by
+ * {@link poly.edu.controllers.ImageController}.
+ *
+ * An image name resolves once, on its first request, to a file on disk (an
+ * upload, or a bundled catalog photo; photos packed in the jar are extracted
+ * to a temp directory) along with its length, modification time, content type
+ * and a strong ETag computed from its bytes. Later requests only check, with
+ * one stat, that the file is unchanged.
+ */
+@Service
+public class ImageManifest {
+
+	/**
+	 * A servable image
+	 *
+	 * @param file      the file on disk
+	 * @param etag      strong entity tag, quoted
+	 * @param immutable content-addressed: the name will never denote other bytes
+	 * @param uploaded  stored in the upload directory rather than bundled
+	 */
+	public record Entry(Path file, long length, long lastModified, String etag, MediaType contentType,
+			boolean immutable, boolean uploaded) {
+	}
+
+	// Names written by ImageUtil.save, and their variants
+	private static final Pattern CONTENT_ADDRESSED = Pattern.compile("products/[0-9a-f]{2}/[0-9a-f]{2}/[^/]+");
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private volatile Path extracted;
+
+	/**
+	 * Resolve an image
+	 *
+	 * @param name the image name, e.g. "products/ab/cd/abcd....jpg"
+	 * @return the entry, or null when there is no such image
+	 */
+	public Entry find(String name) {
+		if (!valid(name)) {
+			return null;
+		}
+		Entry entry = entries.get(name);
+		if (entry != null && current(entry)) {
+			return entry;
+		}
+		if (entry != null) {
+			entries.remove(name, entry);
+		}
+		try {
+			entry = load(name);
+		} catch (IOException e) {
+			return null;
+		}
+		if (entry != null) {
+			entries.put(name, entry);
+		}
+		return entry;
+	}
+
+	private Entry load(String name) throws IOException {
+		Path uploaded = ImageUtil.resolve(name);
+		if (Files.isRegularFile(uploaded)) {
+			return entry(name, uploaded, true);
+		}
+		ClassPathResource bundled = new ClassPathResource("static/images/" + name);
+		if (!bundled.exists()) {
+			return null;
+		}
+		if (bundled.isFile()) {
+			return entry(name, bundled.getFile().toPath(), false);
+		}
+		return entry(name, extract(name, bundled), false);
+	}
+
+	private Entry entry(String name, Path file, boolean uploaded) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+		MediaType contentType = MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM);
+		return new Entry(file, attributes.size(), attributes.lastModifiedTime().toMillis(), etag(file), contentType,
+				CONTENT_ADDRESSED.matcher(name).matches(), uploaded);
+	}
+
+	/**
+	 * Whether the file still has the length and modification time it had when the
+	 * entry was made
+	 */
+	private static boolean current(Entry entry) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(entry.file(), BasicFileAttributes.class);
+			return attributes.size() == entry.length()
+					&& attributes.lastModifiedTime().toMillis() == entry.lastModified();
+		} catch (IOException e) {
+			return false; // deleted
+		}
+	}
+
+	/**
+	 * Copy a photo packed in the application jar to a file, so it can be sent with
+	 * zero-copy I/O like any upload
+	 */
+	private Path extract(String name, ClassPathResource bundled) throws IOException {
+		Path dir = extracted;
+		if (dir == null) {
+			synchronized (this) {
+				if (extracted == null) {
+					extracted = Files.createTempDirectory("flowershop-images");
+				}
+				dir = extracted;
+			}
+		}
+		Path target = dir.resolve(name).normalize();
+		if (!Files.exists(target)) {
+			Files.createDirectories(target.getParent());
+			Path temp = Files.createTempFile(target.getParent(), "extract-", ".tmp");
+			try (InputStream in = bundled.getInputStream()) {
+				Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+		}
+		return target;
+	}
+
+	private static String etag(Path file) throws IOException {
+		MessageDigest sha256;
+		try {
+			sha256 = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		try (InputStream in = new DigestInputStream(Files.newInputStream(file), sha256)) {
+			in.transferTo(OutputStream.nullOutputStream());
+		}
+		return '"' + HexFormat.of().formatHex(sha256.digest(), 0, 16) + '"';
+	}
+
+	private static boolean valid(String name) {
+		return name != null && name.startsWith("products/") && !name.contains("..") && !name.contains("\\")
+				&& !name.contains("//") && !name.endsWith("/");
+	}
+}
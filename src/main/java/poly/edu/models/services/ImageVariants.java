@@ -0,0 +1,574 @@
+package poly.edu.models.services;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import poly.edu.models.entities.ImageInfo;
+import poly.edu.models.repositories.AccountRepository;
+import poly.edu.models.repositories.ProductRepository;
+import poly.edu.utils.ImageUtil;
+
+/**
+ * Resized variants of product photos and avatars.
+ *
+ * Every upload gets fixed-width JPEG variants written next to it in the upload
+ * directory ("products/123.png" -> "products/123-card.jpg"), so listing pages
+ * download a few dozen kilobytes per card instead of the original photo. The
+ * work runs on a small bounded pool, off the request thread; until a variant
+ * exists the templates keep linking the original. Bundled catalog photos are
+ * processed once at startup.
+ *
+ * Templates use {@link #src(String, String)} and
+ * {@link #srcset(String, String...)} through {@code @imageVariants}. Uploads are
+ * also {@link #describe(String) described} once, and the result stored with the
+ * product or account, so pages can reserve the image's box and paint a
+ * preview before it loads.
+ */
+@Service
+public class ImageVariants {
+
+	public enum Variant {
+		CARD(400), DETAIL(800), ZOOM(1600), AVATAR(160);
+
+		final int width;
+
+		Variant(int width) {
+			this.width = width;
+		}
+
+		String suffix() {
+			return name().toLowerCase(Locale.ROOT);
+		}
+	}
+
+	public static final Set<Variant> PRODUCT = EnumSet.of(Variant.CARD, Variant.DETAIL, Variant.ZOOM);
+
+	public static final Set<Variant> ACCOUNT = EnumSet.of(Variant.AVATAR);
+
+	private static final float QUALITY = 0.82f;
+
+	// Low-quality placeholder: stretched (and so blurred) by the browser, a few pixels are enough
+	private static final int PLACEHOLDER_WIDTH = 8;
+
+	// Longest data: URI stored (column length); very tall images only get a color
+	private static final int PLACEHOLDER_MAX_LENGTH = 1000;
+
+	@Autowired
+	ProductRepository productRepository;
+
+	@Autowired
+	AccountRepository accountRepository;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Value("${image.variants.backfill:true}")
+	boolean backfill;
+
+	// Decoding is memory hungry: two at a time, a bounded backlog
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<>(64), r -> {
+				Thread thread = new Thread(r, "image-variants");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/** Widths of every image seen so far and of its variants, by {@link #stem(String)} */
+	private final Map<String, Sizes> generated = new ConcurrentHashMap<>();
+
+	/** Images being measured in the background */
+	private final Set<String> warming = ConcurrentHashMap.newKeySet();
+
+	@PostConstruct
+	void init() {
+		ImageUtil.addListener(this::forget);
+	}
+
+	/**
+	 * Queue generation of the variants of an uploaded image
+	 *
+	 * @param image    the image name returned by {@link ImageUtil#save}
+	 * @param variants the variants to create, {@link #PRODUCT} or {@link #ACCOUNT}
+	 */
+	public void generate(String image, Set<Variant> variants) {
+		if (!managed(image)) {
+			return;
+		}
+		try {
+			// A re-uploaded photo keeps its content-addressed name and variants
+			executor.execute(() -> createMissing(image, variants));
+		} catch (RejectedExecutionException e) {
+			// Pages keep using the original; the next startup fills the gap
+			System.err.println("Image variants queue full, skipped: " + image);
+		}
+	}
+
+	/**
+	 * Read the size of an uploaded image and compute its placeholder: average
+	 * color and a PNG a few pixels wide. Decodes a heavily subsampled copy, so it
+	 * is cheap enough to run on the request thread.
+	 *
+	 * @return the info, or null when the image cannot be read
+	 */
+	public ImageInfo describe(String image) {
+		if (image == null || image.isBlank()) {
+			return null;
+		}
+		try {
+			Source source = read(image, PLACEHOLDER_WIDTH);
+			if (source == null) {
+				return null;
+			}
+			BufferedImage tiny = resize(source.image(), Math.min(PLACEHOLDER_WIDTH, source.image().getWidth()));
+			String placeholder = dataUri(tiny);
+			return new ImageInfo(source.width(), source.height(), color(tiny),
+					placeholder.length() <= PLACEHOLDER_MAX_LENGTH ? placeholder : null);
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Could not describe " + image + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Create missing variants of every product photo and avatar, in one
+	 * background task, then describe the images stored before
+	 * {@link #describe(String)} existed
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void backfill() {
+		if (!backfill) {
+			return;
+		}
+		Set<String> products = new LinkedHashSet<>(productRepository.findDistinctImages());
+		Set<String> accounts = new LinkedHashSet<>(accountRepository.findDistinctPhotos());
+		executor.execute(() -> {
+			products.forEach(image -> createMissing(image, PRODUCT));
+			accounts.forEach(image -> createMissing(image, ACCOUNT));
+			describeMissing();
+		});
+	}
+
+	/**
+	 * Describe, in the background, the images of rows written without going
+	 * through the upload path (bulk imports)
+	 */
+	public void describeLater() {
+		try {
+			executor.execute(this::describeMissing);
+		} catch (RejectedExecutionException e) {
+			System.err.println("Image variants queue full, images described at next startup");
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Image to put in {@code th:src}: the variant when it exists, the original
+	 * otherwise
+	 *
+	 * @param variant a variant name, e.g. "card"
+	 */
+	public String src(String image, String variant) {
+		Variant v = Variant.valueOf(variant.toUpperCase(Locale.ROOT));
+		return sizes(image).variants().containsKey(v) ? ImageUtil.variant(image, v.suffix()) : image;
+	}
+
+	/**
+	 * Value of a {@code srcset} attribute listing the existing variants, e.g.
+	 * "/images/products/1-card.jpg 400w, /images/products/1-detail.jpg 800w".
+	 * When the original is narrower than a requested variant, it is listed in its
+	 * place.
+	 *
+	 * @return the candidates, or null (no attribute) when no variant exists yet
+	 */
+	public String srcset(String image, String... variants) {
+		Sizes sizes = sizes(image);
+		if (sizes.variants().isEmpty()) {
+			return null;
+		}
+		String base = ServletUriComponentsBuilder.fromCurrentContextPath().path("/images/").build().getPath();
+		StringJoiner candidates = new StringJoiner(", ");
+		boolean original = false;
+		for (String variant : variants) {
+			Variant v = Variant.valueOf(variant.toUpperCase(Locale.ROOT));
+			Integer width = sizes.variants().get(v);
+			if (width != null) {
+				candidates.add(base + ImageUtil.variant(image, v.suffix()) + " " + width + "w");
+			} else if (!original && sizes.original() > 0 && sizes.original() <= v.width) {
+				candidates.add(base + image + " " + sizes.original() + "w");
+				original = true;
+			}
+		}
+		return candidates.toString();
+	}
+
+	/**
+	 * Widths of an image and of its variants, as known so far. Runs on the render
+	 * thread, so it never touches the disk: an image not measured yet is measured
+	 * in the background and, meanwhile, pages link the original.
+	 */
+	private Sizes sizes(String image) {
+		if (!managed(image)) {
+			return Sizes.NONE;
+		}
+		Sizes sizes = generated.get(stem(image));
+		if (sizes == null) {
+			warm(image);
+			return Sizes.NONE;
+		}
+		return sizes;
+	}
+
+	// Once per image, however many pages ask for it before it is measured
+	private void warm(String image) {
+		String stem = stem(image);
+		if (!warming.add(stem)) {
+			return;
+		}
+		try {
+			executor.execute(() -> {
+				try {
+					measured(image);
+				} finally {
+					warming.remove(stem);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// Busy: the next page asking for it tries again
+			warming.remove(stem);
+		}
+	}
+
+	/**
+	 * Widths of an image and of its variants found on disk, read once (headers
+	 * only) and then kept up to date by the generator. Background threads only.
+	 */
+	private Sizes measured(String image) {
+		return generated.computeIfAbsent(stem(image), key -> {
+			Map<Variant, Integer> widths = new EnumMap<>(Variant.class);
+			for (Variant v : Variant.values()) {
+				Path file = ImageUtil.resolve(ImageUtil.variant(image, v.suffix()));
+				if (Files.exists(file)) {
+					try (InputStream in = Files.newInputStream(file)) {
+						widths.put(v, width(in));
+					} catch (IOException e) {
+						// unreadable variant: not offered
+					}
+				}
+			}
+			int original = 0;
+			try (InputStream in = open(image)) {
+				original = in == null ? 0 : width(in);
+			} catch (IOException e) {
+				// unknown width: the original is not offered in srcset
+			}
+			return new Sizes(original, Collections.unmodifiableMap(widths));
+		});
+	}
+
+	/**
+	 * An original or a variant was written, deleted or quarantined: the widths
+	 * known for the original are read from disk again at the next use, so pages
+	 * stop linking variants that are gone and missing ones get generated again
+	 */
+	private void forget(String name) {
+		generated.remove(stem(name));
+		for (Variant v : Variant.values()) {
+			String suffix = "-" + v.suffix() + ".jpg";
+			if (name.endsWith(suffix)) {
+				// "products/123-card.jpg" belongs to "products/123.*"
+				generated.remove(name.substring(0, name.length() - suffix.length()));
+			}
+		}
+	}
+
+	/**
+	 * Key of an image and its variants: the name without its extension, the part
+	 * variant names are built from ("products/123.png" -> "products/123")
+	 */
+	static String stem(String image) {
+		String variant = ImageUtil.variant(image, "");
+		return variant.substring(0, variant.length() - "-.jpg".length());
+	}
+
+	private void describeMissing() {
+		int products = 0;
+		for (String image : productRepository.findImagesWithoutInfo()) {
+			ImageInfo info = describe(image);
+			if (info != null) {
+				products += productRepository.updateImageInfo(image, info.getWidth(), info.getHeight(),
+						info.getColor(), info.getPlaceholder());
+			}
+		}
+		for (String photo : accountRepository.findPhotosWithoutInfo()) {
+			ImageInfo info = describe(photo);
+			if (info != null) {
+				accountRepository.updatePhotoInfo(photo, info.getWidth(), info.getHeight(), info.getColor(),
+						info.getPlaceholder());
+			}
+		}
+		if (products > 0) {
+			// The storefront renders from its snapshot: reload it with the new columns
+			eventPublisher.publishEvent(new CatalogChangedEvent("product", null));
+		}
+	}
+
+	// Only when a variant that create() would write is missing (one may have been quarantined)
+	private void createMissing(String image, Set<Variant> variants) {
+		if (!managed(image)) {
+			return;
+		}
+		Sizes sizes = measured(image);
+		int smallest = variants.stream().mapToInt(v -> v.width).min().orElse(0);
+		boolean missing = variants.stream().anyMatch(v -> !sizes.variants().containsKey(v)
+				&& (v.width < sizes.original() || v.width == smallest));
+		if (missing) {
+			create(image, variants);
+		}
+	}
+
+	/**
+	 * Write the variants narrower than the original. The smallest one is always
+	 * written, re-encoded at the original width if need be, so every image gets at
+	 * least one light version.
+	 */
+	private void create(String image, Set<Variant> variants) {
+		try {
+			int largest = variants.stream().mapToInt(v -> v.width).max().orElse(0);
+			int smallest = variants.stream().mapToInt(v -> v.width).min().orElse(0);
+			Source source = read(image, largest);
+			if (source == null) {
+				return;
+			}
+			Map<Variant, Integer> widths = new EnumMap<>(Variant.class);
+			widths.putAll(measured(image).variants());
+			for (Variant v : variants) {
+				if (v.width >= source.width() && v.width != smallest) {
+					continue; // never upscale: the original serves this size
+				}
+				BufferedImage resized = resize(source.image(), Math.min(v.width, source.image().getWidth()));
+				write(resized, ImageUtil.resolve(ImageUtil.variant(image, v.suffix())));
+				ImageUtil.changed(ImageUtil.variant(image, v.suffix()));
+				widths.put(v, resized.getWidth());
+			}
+			generated.put(stem(image), new Sizes(source.width(), Collections.unmodifiableMap(widths)));
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Could not create variants of " + image + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Decode an uploaded or bundled image, subsampled while reading when it is far
+	 * larger than needed
+	 */
+	private Source read(String image, int targetWidth) throws IOException {
+		try (InputStream in = open(image)) {
+			if (in == null) {
+				return null;
+			}
+			try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+				Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+				if (!readers.hasNext()) {
+					return null;
+				}
+				ImageReader reader = readers.next();
+				try {
+					reader.setInput(stream, true, true);
+					int width = reader.getWidth(0);
+					ImageReadParam param = reader.getDefaultReadParam();
+					int step = width / (targetWidth * 2);
+					if (step > 1) {
+						param.setSourceSubsampling(step, step, 0, 0);
+					}
+					return new Source(reader.read(0, param), width, reader.getHeight(0));
+				} finally {
+					reader.dispose();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Open an uploaded image, or a catalog photo bundled with the application
+	 *
+	 * @return the stream, or null when the image does not exist
+	 */
+	private static InputStream open(String image) throws IOException {
+		Path uploaded = ImageUtil.resolve(image);
+		if (Files.exists(uploaded)) {
+			return Files.newInputStream(uploaded);
+		}
+		Resource bundled = new ClassPathResource("static/images/" + image);
+		return bundled.exists() ? bundled.getInputStream() : null;
+	}
+
+	/**
+	 * Scale to the given width, halving step by step so that downscaling stays
+	 * smooth
+	 */
+	private static BufferedImage resize(BufferedImage source, int width) {
+		BufferedImage current = flatten(source);
+		while (current.getWidth() > width) {
+			int next = Math.max(width, current.getWidth() / 2);
+			int height = Math.max(1, (int) Math.round((double) current.getHeight() * next / current.getWidth()));
+			BufferedImage scaled = new BufferedImage(next, height, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = scaled.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g.drawImage(current, 0, 0, next, height, null);
+			g.dispose();
+			current = scaled;
+		}
+		return current;
+	}
+
+	/**
+	 * JPEG has no alpha channel: paint transparent pixels white
+	 */
+	private static BufferedImage flatten(BufferedImage source) {
+		if (source.getType() == BufferedImage.TYPE_INT_RGB) {
+			return source;
+		}
+		BufferedImage rgb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = rgb.createGraphics();
+		g.drawImage(source, 0, 0, Color.WHITE, null);
+		g.dispose();
+		return rgb;
+	}
+
+	/**
+	 * Write a progressive JPEG, through a temp file so readers never see a
+	 * partial variant
+	 */
+	private static void write(BufferedImage image, Path target) throws IOException {
+		Files.createDirectories(target.getParent());
+		Path temp = Files.createTempFile(target.getParent(), "variant-", ".tmp");
+		try {
+			ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+			try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+				writer.setOutput(out);
+				ImageWriteParam param = writer.getDefaultWriteParam();
+				param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+				param.setCompressionQuality(QUALITY);
+				param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+				writer.write(null, new IIOImage(image, null, null), param);
+			} finally {
+				writer.dispose();
+			}
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * PNG as a data: URI. At this size PNG beats JPEG, whose fixed headers alone
+	 * take some 600 bytes.
+	 */
+	private static String dataUri(BufferedImage image) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", bytes);
+		return "data:image/png;base64," + Base64.getEncoder().encodeToString(bytes.toByteArray());
+	}
+
+	/**
+	 * Average color of an (RGB) image, "#rrggbb"
+	 */
+	private static String color(BufferedImage image) {
+		long red = 0, green = 0, blue = 0;
+		int pixels = image.getWidth() * image.getHeight();
+		for (int y = 0; y < image.getHeight(); y++) {
+			for (int x = 0; x < image.getWidth(); x++) {
+				int rgb = image.getRGB(x, y);
+				red += (rgb >> 16) & 0xff;
+				green += (rgb >> 8) & 0xff;
+				blue += rgb & 0xff;
+			}
+		}
+		return String.format("#%02x%02x%02x", red / pixels, green / pixels, blue / pixels);
+	}
+
+	/**
+	 * Width from the image header, without decoding the pixels
+	 */
+	private static int width(InputStream in) throws IOException {
+		try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext()) {
+				return 0;
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(stream, true, true);
+				return reader.getWidth(0);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Only images under products/ live in (or mirror into) the upload directory
+	 */
+	private static boolean managed(String image) {
+		return image != null && image.startsWith("products/") && !image.contains("..");
+	}
+
+	/**
+	 * Width of the original (0 when unknown) and of each generated variant
+	 */
+	private record Sizes(int original, Map<Variant, Integer> variants) {
+
+		static final Sizes NONE = new Sizes(0, Map.of());
+	}
+
+	private record Source(BufferedImage image, int width, int height) {
+	}
+}
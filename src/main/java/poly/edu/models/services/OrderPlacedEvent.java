@@ -0,0 +1,14 @@
+package poly.edu.models.services;
+
+import java.util.List;
+
+/**
+ * Published by the order service when a new order has been persisted. Listeners
+ * that aggregate order history ({@link ProductRecommender}) update themselves
+ * after the surrounding transaction commits.
+ * 
+ * @param orderId    id of the new order
+ * @param productIds ids of the products in the order, one per order line
+ */
+public record OrderPlacedEvent(Long orderId, List<Integer> productIds) {
+}
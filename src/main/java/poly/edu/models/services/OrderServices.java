@@ -6,11 +6,27 @@ import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import poly.edu.models.cart.Cart;
+import poly.edu.models.cart.CartLine;
+import poly.edu.models.entities.Account;
 import poly.edu.models.entities.Order;
+import poly.edu.models.projections.OrderRow;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 
 public interface OrderServices {
 	
 	void save(Order order);
+	
+	/**
+	 * Turn a cart into an order at today's prices. The order and the stock taken
+	 * for each of its lines are committed together, or not at all.
+	 * 
+	 * @throws RuntimeException "Insufficient stock" when a line can no longer be
+	 *                          served, "Price changed" when a product no longer
+	 *                          costs what the cart shows
+	 */
+	Order placeOrder(Account account, String address, Cart cart);
     
     void delete(Long id);
     
@@ -18,9 +34,23 @@ public interface OrderServices {
     
     Order findById(Long id);
     
-	Order addOrderDetailToOrder(Order order, Integer productId, Integer quantity);
+	Cart addOrderDetailToOrder(Cart cart, Integer productId, Integer quantity);
+	
+	boolean validateStock(Cart cart);
+	
+	/**
+	 * The lines of a cart at today's prices. The cart is updated in place: its
+	 * prices are brought up to date and deleted products leave it.
+	 */
+	List<CartLine> cartLines(Cart cart);
 	
-	boolean validateStock(Order order);
+	/**
+	 * Bring the prices of a cart up to date, for a cart loaded or merged from
+	 * the saved ones
+	 * 
+	 * @return true when a price has changed
+	 */
+	boolean reprice(Cart cart);
 	
 	Page<Order> searchOrders(String keyword, String status, LocalDate fromDate, LocalDate toDate, Pageable pageable);
 	
@@ -29,4 +59,12 @@ public interface OrderServices {
 	Double calculateOrderTotal(Order order);
 	
 	List<Order> findAllDescById();
+	
+	List<Order> findByUsername(String username);
+	
+	/**
+	 * One keyset page of order dashboard rows, newest first
+	 */
+	CursorPage<OrderRow> scrollRows(String keyword, String status, LocalDate fromDate, LocalDate toDate,
+			Cursor cursor, int size);
 }
@@ -0,0 +1,521 @@
+package poly.edu.models.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import poly.edu.models.entities.Category;
+import poly.edu.models.entities.Product;
+import poly.edu.models.repositories.CategoryRepository;
+import poly.edu.utils.CsvReader;
+import poly.edu.utils.TextUtil;
+import poly.edu.utils.ValidationUtil;
+
+/**
+ * Bulk product import from CSV or XLSX.
+ *
+ * The file is streamed row by row (CSV reader / SAX sheet parser), so memory
+ * does not grow with the file. Each row is validated with the same rules as the
+ * product form, its category is resolved from a map loaded once per import, and
+ * valid rows are inserted with JDBC batches (one transaction per batch). The
+ * import has a connection of its own, opened with useBulkCopyForBatchInsert so
+ * the driver turns its batches into bulk copies; other batch inserts of the
+ * application keep plain INSERTs. When a batch fails, its rows are inserted one
+ * by one so each bad row gets its own error.
+ *
+ * Imports run one at a time on a background thread; the returned
+ * {@link ImportJob} reports progress and collects per-row errors.
+ *
+ * Expected header (case-insensitive, any column order): name, image, price,
+ * amount, category, and optionally available, createDate (yyyy-MM-dd). The
+ * category column takes a category id or name; image is a path under /images
+ * or /uploads, as stored by the product form. Numbers in CSV files are read in
+ * product.import.locale (vi-VN: 150.000 is a hundred and fifty thousand, 12,5
+ * is twelve and a half); XLSX cells hold plain numbers. An amount must be a
+ * whole number.
+ */
+@Service
+public class ProductImporter {
+
+	/** Errors kept per job; further ones are only counted */
+	public static final int MAX_ERRORS = 1000;
+
+	/** Finished jobs kept for the progress page */
+	private static final int MAX_JOBS = 20;
+
+	private static final String INSERT_SQL = "INSERT INTO Products (Name, SearchName, Image, Price, Amount, CreateDate, Available, CategoryId) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+	// Connection settings of the application's data source, reused for the import's own connection
+	@Autowired
+	DataSourceProperties dataSourceProperties;
+
+	@Autowired
+	CategoryRepository categoryRepository;
+
+	@Autowired
+	CatalogCache catalogCache;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	ImageVariants imageVariants;
+
+	@Value("${product.import.batch-size:500}")
+	int batchSize;
+
+	@Value("${product.import.locale:vi-VN}")
+	Locale csvLocale;
+
+	// One import at a time, a few queued
+	private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<>(4), r -> {
+				Thread thread = new Thread(r, "product-import");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	private final Map<String, ImportJob> jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, ImportJob> eldest) {
+			return size() > MAX_JOBS;
+		}
+	});
+
+	/**
+	 * Queue an import of the uploaded file
+	 *
+	 * @param file a .csv or .xlsx file
+	 * @return the job, to poll for progress
+	 * @throws IllegalArgumentException when the file type is not supported
+	 * @throws java.util.concurrent.RejectedExecutionException when too many imports
+	 *                                                          are queued
+	 */
+	public ImportJob start(MultipartFile file) throws IOException {
+		String name = file.getOriginalFilename() == null ? "" : file.getOriginalFilename();
+		String lower = name.toLowerCase(Locale.ROOT);
+		boolean xlsx = lower.endsWith(".xlsx");
+		if (!xlsx && !lower.endsWith(".csv")) {
+			throw new IllegalArgumentException("Only .csv and .xlsx files can be imported");
+		}
+
+		// The upload is gone once the request ends: stream it to a temp file first
+		Path temp = Files.createTempFile("product-import-", xlsx ? ".xlsx" : ".csv");
+		try (InputStream in = file.getInputStream()) {
+			Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		ImportJob job = new ImportJob(name);
+		jobs.put(job.getId(), job);
+		try {
+			executor.execute(() -> run(job, temp, xlsx));
+		} catch (RuntimeException e) {
+			jobs.remove(job.getId());
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		return job;
+	}
+
+	public ImportJob find(String id) {
+		return id == null ? null : jobs.get(id);
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private void run(ImportJob job, Path file, boolean xlsx) {
+		job.status = "RUNNING";
+		SingleConnectionDataSource dataSource = null;
+		try {
+			dataSource = bulkCopyDataSource();
+			RowWriter writer = new RowWriter(job, categoriesByKey(), dataSource, xlsx ? Locale.ROOT : csvLocale);
+			if (xlsx) {
+				readXlsx(file, writer);
+			} else {
+				readCsv(file, writer);
+			}
+			writer.flush();
+			job.status = "DONE";
+		} catch (Exception e) {
+			e.printStackTrace();
+			job.status = "FAILED";
+			job.message = e.getMessage();
+		} finally {
+			if (dataSource != null) {
+				dataSource.destroy();
+			}
+			job.finishedAt = LocalDateTime.now();
+			try {
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			if (job.imported > 0) {
+				// JDBC writes bypass Hibernate: drop cached products / listing queries
+				catalogCache.evictAll();
+				eventPublisher.publishEvent(CatalogChangedEvent.category());
+				imageVariants.describeLater();
+			}
+		}
+	}
+
+	private void readCsv(Path file, RowWriter writer) throws IOException {
+		try (CsvReader csv = new CsvReader(
+				new BufferedReader(new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)), ',')) {
+			List<String> row;
+			int rowNumber = 0;
+			while ((row = csv.next()) != null) {
+				writer.row(++rowNumber, row);
+			}
+		}
+	}
+
+	private void readXlsx(Path file, RowWriter writer) throws Exception {
+		try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+			XSSFReader reader = new XSSFReader(pkg);
+			ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+			XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+			if (!sheets.hasNext()) {
+				return;
+			}
+			// Only the first sheet is imported
+			try (InputStream sheet = sheets.next()) {
+				XMLReader parser = XMLHelper.newXMLReader();
+				parser.setContentHandler(new XSSFSheetXMLHandler(reader.getStylesTable(), null, strings,
+						new SheetRows(writer), new DataFormatter(Locale.ROOT), false));
+				parser.parse(new InputSource(sheet));
+			}
+		}
+	}
+
+	/**
+	 * One connection for the whole import, with batch inserts sent as bulk copies
+	 */
+	private SingleConnectionDataSource bulkCopyDataSource() {
+		String url = dataSourceProperties.determineUrl();
+		SingleConnectionDataSource dataSource = new SingleConnectionDataSource(
+				url + (url.endsWith(";") ? "" : ";") + "useBulkCopyForBatchInsert=true",
+				dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword(), true);
+		dataSource.setDriverClassName(dataSourceProperties.determineDriverClassName());
+		return dataSource;
+	}
+
+	/**
+	 * Read a number written in the given locale. Grouping separators must
+	 * separate groups of three digits, so in vi-VN "150.000" is 150000 while
+	 * "2.7" is rejected rather than read as 27.
+	 *
+	 * @throws NumberFormatException when the text is not such a number
+	 */
+	static BigDecimal parseNumber(String text, Locale locale) {
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+		String grouping = String.valueOf(symbols.getGroupingSeparator());
+		String decimal = String.valueOf(symbols.getDecimalSeparator());
+		String pattern = "-?(\\d+|\\d{1,3}(" + Pattern.quote(grouping) + "\\d{3})+)(" + Pattern.quote(decimal)
+				+ "\\d+)?";
+		if (!text.matches(pattern)) {
+			throw new NumberFormatException(text);
+		}
+		return new BigDecimal(text.replace(grouping, "").replace(decimal, "."));
+	}
+
+	/**
+	 * Category lookup by id and by folded name, loaded once per import
+	 */
+	private Map<String, Category> categoriesByKey() {
+		Map<String, Category> categories = new HashMap<>();
+		for (Category c : categoryRepository.findAll()) {
+			categories.put(c.getId().trim().toLowerCase(Locale.ROOT), c);
+			if (c.getName() != null) {
+				categories.putIfAbsent(TextUtil.fold(c.getName()), c);
+			}
+		}
+		return categories;
+	}
+
+	/**
+	 * Adapts SAX sheet events to rows of cell values (missing cells are empty)
+	 */
+	private static final class SheetRows implements SheetContentsHandler {
+
+		private final RowWriter writer;
+		private final List<String> cells = new ArrayList<>();
+
+		SheetRows(RowWriter writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void startRow(int rowNum) {
+			cells.clear();
+		}
+
+		@Override
+		public void endRow(int rowNum) {
+			writer.row(rowNum + 1, cells);
+		}
+
+		@Override
+		public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+			int column = cellReference == null ? cells.size() : new CellReference(cellReference).getCol();
+			while (cells.size() < column) {
+				cells.add("");
+			}
+			cells.add(formattedValue == null ? "" : formattedValue);
+		}
+	}
+
+	/**
+	 * Maps, validates and batches rows. The first row is the header.
+	 */
+	private final class RowWriter {
+
+		private final ImportJob job;
+		private final Map<String, Category> categories;
+		private final JdbcTemplate jdbcTemplate;
+		private final TransactionTemplate transactionTemplate;
+		private final Locale locale;
+		private final List<Object[]> batch = new ArrayList<>();
+		private final List<Integer> batchRows = new ArrayList<>();
+		private Map<String, Integer> columns;
+
+		RowWriter(ImportJob job, Map<String, Category> categories, DataSource dataSource, Locale locale) {
+			this.job = job;
+			this.categories = categories;
+			this.jdbcTemplate = new JdbcTemplate(dataSource);
+			this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+			this.locale = locale;
+		}
+
+		void row(int rowNumber, List<String> cells) {
+			if (columns == null) {
+				columns = header(cells);
+				for (String required : List.of("name", "image", "price", "amount", "category")) {
+					if (!columns.containsKey(required)) {
+						throw new IllegalArgumentException("Missing column '" + required + "' in the header row");
+					}
+				}
+				return;
+			}
+			if (cells.stream().allMatch(String::isBlank)) {
+				return;
+			}
+			job.rowsRead++;
+
+			Product product = new Product();
+			String error = map(cells, product);
+			if (error == null) {
+				error = ValidationUtil.validateProduct(product);
+			}
+			if (error == null && (product.getImage() == null || product.getImage().isBlank())) {
+				error = "Product image is required for new products";
+			}
+			if (error != null) {
+				job.error(rowNumber, error);
+				return;
+			}
+
+			batch.add(new Object[] { product.getName(), TextUtil.fold(product.getName()), product.getImage(),
+					product.getPrice(), product.getAmount(), Date.valueOf(product.getCreateDate()),
+					product.getAvailable(), product.getCategory().getId() });
+			batchRows.add(rowNumber);
+			if (batch.size() >= batchSize) {
+				flush();
+			}
+		}
+
+		void flush() {
+			if (batch.isEmpty()) {
+				return;
+			}
+			try {
+				transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch));
+				job.imported += batch.size();
+			} catch (RuntimeException e) {
+				// The batch was rolled back: one bad row fails it all, so find which
+				for (int i = 0; i < batch.size(); i++) {
+					try {
+						jdbcTemplate.update(INSERT_SQL, batch.get(i));
+						job.imported++;
+					} catch (RuntimeException rowError) {
+						job.error(batchRows.get(i),
+								"Insert failed: " + NestedExceptionUtils.getMostSpecificCause(rowError).getMessage());
+					}
+				}
+			}
+			batch.clear();
+			batchRows.clear();
+		}
+
+		private Map<String, Integer> header(List<String> cells) {
+			Map<String, Integer> header = new HashMap<>();
+			for (int i = 0; i < cells.size(); i++) {
+				// Excel writes a byte order mark in front of UTF-8 CSV files
+				String key = cells.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT).replace("_", "");
+				if (key.equals("categoryid")) {
+					key = "category";
+				}
+				header.putIfAbsent(key, i);
+			}
+			return header;
+		}
+
+		private String cell(List<String> cells, String column) {
+			Integer index = columns.get(column);
+			if (index == null || index >= cells.size()) {
+				return null;
+			}
+			String value = cells.get(index).trim();
+			return value.isEmpty() ? null : value;
+		}
+
+		/**
+		 * Copy the row into the product
+		 *
+		 * @return a parse error, or null
+		 */
+		private String map(List<String> cells, Product product) {
+			product.setName(cell(cells, "name"));
+			product.setImage(cell(cells, "image"));
+
+			String price = cell(cells, "price");
+			if (price != null) {
+				try {
+					product.setPrice(parseNumber(price, locale).doubleValue());
+				} catch (NumberFormatException e) {
+					return "Invalid price: " + price;
+				}
+			}
+
+			String amount = cell(cells, "amount");
+			if (amount != null) {
+				try {
+					product.setAmount(parseNumber(amount, locale).intValueExact());
+				} catch (NumberFormatException | ArithmeticException e) {
+					return "Invalid amount (a whole number): " + amount;
+				}
+			}
+
+			String category = cell(cells, "category");
+			if (category != null) {
+				Category found = categories.get(category.toLowerCase(Locale.ROOT));
+				if (found == null) {
+					found = categories.get(TextUtil.fold(category));
+				}
+				if (found == null) {
+					return "Unknown category: " + category;
+				}
+				product.setCategory(found);
+			}
+
+			String available = cell(cells, "available");
+			if (available != null) {
+				product.setAvailable(available.equalsIgnoreCase("true") || available.equals("1")
+						|| available.equalsIgnoreCase("yes"));
+			}
+
+			String createDate = cell(cells, "createdate");
+			if (createDate != null) {
+				try {
+					product.setCreateDate(LocalDate.parse(createDate));
+				} catch (DateTimeParseException e) {
+					return "Invalid create date (yyyy-MM-dd): " + createDate;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Progress and outcome of one import, updated by the import thread
+	 */
+	@Getter
+	public static class ImportJob {
+
+		private final String id = UUID.randomUUID().toString();
+		private final String fileName;
+		private final LocalDateTime startedAt = LocalDateTime.now();
+		private volatile LocalDateTime finishedAt;
+		private volatile String status = "QUEUED";
+		private volatile String message;
+		private volatile int rowsRead;
+		private volatile int imported;
+		private volatile int failed;
+		private final List<RowError> errors = Collections.synchronizedList(new ArrayList<>());
+
+		ImportJob(String fileName) {
+			this.fileName = fileName;
+		}
+
+		public boolean isRunning() {
+			return "QUEUED".equals(status) || "RUNNING".equals(status);
+		}
+
+		void error(int row, String message) {
+			failed++;
+			if (errors.size() < MAX_ERRORS) {
+				errors.add(new RowError(row, message));
+			}
+		}
+	}
+
+	public record RowError(int row, String message) {
+	}
+}
@@ -0,0 +1,255 @@
+package poly.edu.models.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import poly.edu.models.entities.Product;
+import poly.edu.models.repositories.OrderDetailRepository;
+
+/**
+ * "Customers also bought" recommendations from order history.
+ * 
+ * Keeps a sparse co-occurrence matrix: for every pair of products, the number
+ * of orders that contain both. From it, each product's most related products
+ * are precomputed, so a product page only does a map lookup.
+ * 
+ * The matrix is updated incrementally for every committed
+ * {@link OrderPlacedEvent} and fully recomputed every night (fork-join over
+ * all orders) so it never drifts from the OrderDetails table. The first
+ * computation starts in the background once the application is ready; until it
+ * is done, product pages show no related products.
+ */
+@Service
+public class ProductRecommender {
+
+	private static final Logger log = LoggerFactory.getLogger(ProductRecommender.class);
+
+	/** How many related ids are kept per product */
+	public static final int MAX_RELATED = 12;
+
+	// Baskets per fork-join leaf task
+	private static final int BASKETS_PER_TASK = 512;
+
+	@Autowired
+	OrderDetailRepository orderDetailRepository;
+
+	@Autowired
+	CatalogSnapshot catalogSnapshot;
+
+	private final Object writeLock = new Object();
+
+	// product id -> (other product id -> number of orders with both), guarded by writeLock
+	private Map<Integer, Map<Integer, Integer>> matrix = new HashMap<>();
+
+	// product id -> related product ids, best first; what readers see
+	private volatile Map<Integer, List<Integer>> related = new ConcurrentHashMap<>();
+
+	// Orders committed while a full recompute is running, replayed on top of it
+	private final List<OrderPlacedEvent> pending = new ArrayList<>();
+	private boolean recomputing = false;
+
+	private volatile boolean loaded = false;
+
+	/**
+	 * Related products for a product page, from memory
+	 * 
+	 * @param productId the product being viewed
+	 * @param limit     maximum number of products returned
+	 * @return available products most often bought together with it, best first;
+	 *         empty until the first computation is done
+	 */
+	public List<Product> related(Integer productId, int limit) {
+		List<Product> result = new ArrayList<>();
+		for (Integer id : related.getOrDefault(productId, List.of())) {
+			Product product = catalogSnapshot.findById(id);
+			if (product != null && Boolean.TRUE.equals(product.getAvailable())) {
+				result.add(product);
+				if (result.size() == limit) {
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onOrderPlaced(OrderPlacedEvent event) {
+		synchronized (writeLock) {
+			if (!loaded && !recomputing) {
+				return; // the startup computation reads every order anyway
+			}
+			if (recomputing) {
+				pending.add(event);
+			}
+			for (Integer id : add(matrix, basket(event.productIds()))) {
+				related.put(id, topRelated(matrix.get(id)));
+			}
+		}
+	}
+
+	/**
+	 * First computation, off the startup thread: on the fork-join pool the
+	 * counting already runs on
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void load() {
+		CompletableFuture.runAsync(this::recompute, ForkJoinPool.commonPool()).exceptionally(e -> {
+			log.error("Could not compute recommendations, retried by the nightly run", e);
+			return null;
+		});
+	}
+
+	/**
+	 * Nightly full recompute, see recommendation.recompute-cron
+	 */
+	@Scheduled(cron = "${recommendation.recompute-cron:0 0 3 * * *}")
+	public void recompute() {
+		synchronized (writeLock) {
+			recomputing = true;
+			pending.clear();
+		}
+		try {
+			// [orderId, productId] ordered by order
+			List<Object[]> rows = orderDetailRepository.findOrderProductPairs();
+			List<int[]> baskets = new ArrayList<>();
+			long lastOrderId = -1;
+			Long currentOrder = null;
+			Set<Integer> current = new LinkedHashSet<>();
+			for (Object[] row : rows) {
+				Long orderId = ((Number) row[0]).longValue();
+				if (!orderId.equals(currentOrder)) {
+					addBasket(baskets, current);
+					current = new LinkedHashSet<>();
+					currentOrder = orderId;
+					lastOrderId = Math.max(lastOrderId, orderId);
+				}
+				current.add(((Number) row[1]).intValue());
+			}
+			addBasket(baskets, current);
+
+			Map<Integer, Map<Integer, Integer>> built = ForkJoinPool.commonPool()
+					.invoke(new CountTask(baskets, 0, baskets.size()));
+			Map<Integer, List<Integer>> top = new ConcurrentHashMap<>();
+			built.entrySet().parallelStream().forEach(e -> top.put(e.getKey(), topRelated(e.getValue())));
+
+			synchronized (writeLock) {
+				for (OrderPlacedEvent event : pending) {
+					if (event.orderId() == null || event.orderId() > lastOrderId) {
+						for (Integer id : add(built, basket(event.productIds()))) {
+							top.put(id, topRelated(built.get(id)));
+						}
+					}
+				}
+				matrix = built;
+				related = top;
+				loaded = true;
+			}
+		} finally {
+			synchronized (writeLock) {
+				recomputing = false;
+				pending.clear();
+			}
+		}
+	}
+
+	private static void addBasket(List<int[]> baskets, Set<Integer> basket) {
+		// Single-product orders relate nothing
+		if (basket.size() > 1) {
+			baskets.add(basket.stream().mapToInt(Integer::intValue).toArray());
+		}
+	}
+
+	private static int[] basket(List<Integer> productIds) {
+		return productIds.stream().distinct().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * Count every pair of the basket in both directions
+	 * 
+	 * @return the product ids whose row changed
+	 */
+	private static List<Integer> add(Map<Integer, Map<Integer, Integer>> matrix, int[] basket) {
+		if (basket.length < 2) {
+			return List.of();
+		}
+		for (int a : basket) {
+			Map<Integer, Integer> row = matrix.computeIfAbsent(a, k -> new HashMap<>());
+			for (int b : basket) {
+				if (a != b) {
+					row.merge(b, 1, Integer::sum);
+				}
+			}
+		}
+		return Arrays.stream(basket).boxed().toList();
+	}
+
+	private static List<Integer> topRelated(Map<Integer, Integer> row) {
+		if (row == null) {
+			return List.of();
+		}
+		return row.entrySet().stream()
+				.sorted(Comparator.comparing(Map.Entry<Integer, Integer>::getValue).reversed()
+						.thenComparing(Map.Entry::getKey, Comparator.reverseOrder()))
+				.limit(MAX_RELATED)
+				.map(Map.Entry::getKey)
+				.toList();
+	}
+
+	/**
+	 * Builds the matrix for a range of baskets, splitting until ranges are small
+	 * and merging the partial matrices on the way back
+	 */
+	private static class CountTask extends RecursiveTask<Map<Integer, Map<Integer, Integer>>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<int[]> baskets;
+		private final int from;
+		private final int to;
+
+		CountTask(List<int[]> baskets, int from, int to) {
+			this.baskets = baskets;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Map<Integer, Map<Integer, Integer>> compute() {
+			if (to - from <= BASKETS_PER_TASK) {
+				Map<Integer, Map<Integer, Integer>> result = new HashMap<>();
+				for (int i = from; i < to; i++) {
+					add(result, baskets.get(i));
+				}
+				return result;
+			}
+			int middle = (from + to) >>> 1;
+			CountTask left = new CountTask(baskets, from, middle);
+			left.fork();
+			Map<Integer, Map<Integer, Integer>> result = new CountTask(baskets, middle, to).compute();
+			left.join().forEach((product, row) -> {
+				Map<Integer, Integer> target = result.computeIfAbsent(product, k -> new HashMap<>());
+				row.forEach((other, count) -> target.merge(other, count, Integer::sum));
+			});
+			return result;
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package poly.edu.models.services;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Published by {@link BestSellerRanking} after it wrote sales to the summary
+ * table; the in-memory ranking applies them once the transaction commits.
+ * 
+ * @param saleDate   the day the quantities are booked on (order date)
+ * @param quantities product id -> quantity sold, negative when an order was
+ *                   cancelled
+ */
+public record ProductSalesEvent(LocalDate saleDate, Map<Integer, Integer> quantities) {
+}
@@ -0,0 +1,322 @@
+package poly.edu.models.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import poly.edu.models.entities.Product;
+import poly.edu.models.repositories.ProductRepository;
+import poly.edu.utils.TextUtil;
+
+/**
+ * Embedded full-text index over product name and category name.
+ * 
+ * Text is folded with {@link TextUtil#fold(String)} so "hoa cuoi" matches "Hoa
+ * Cưới". Every query term may match a term exactly, as a prefix, or with a
+ * small edit distance (typo tolerance, found through a trigram index). Results
+ * are ranked by relevance: name matches weigh more than category matches and
+ * exact matches more than prefix / fuzzy ones.
+ * 
+ * The index lives in memory, is built lazily on first use and is updated per
+ * product whenever a {@link CatalogChangedEvent} is committed.
+ */
+@Service
+public class ProductSearchIndex {
+
+	/** Maximum number of ranked hits returned for one query, for display */
+	public static final int MAX_RESULTS = 1000;
+
+	private static final double NAME_WEIGHT = 2.0;
+	private static final double CATEGORY_WEIGHT = 1.0;
+
+	private static final double EXACT_MATCH = 1.0;
+	private static final double PREFIX_MATCH = 0.8;
+	private static final double FUZZY_MATCH_1 = 0.6;
+	private static final double FUZZY_MATCH_2 = 0.4;
+
+	@Autowired
+	ProductRepository productRepository;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// product id -> (term -> field weight)
+	private Map<Integer, Map<String, Double>> documents = new HashMap<>();
+
+	// term -> product ids, sorted so prefix lookups are a sub map
+	private TreeMap<String, Set<Integer>> postings = new TreeMap<>();
+
+	// trigram -> terms containing it, used to find fuzzy candidates
+	private Map<String, Set<String>> trigrams = new HashMap<>();
+
+	private volatile boolean loaded = false;
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onCatalogChanged(CatalogChangedEvent event) {
+		if (!loaded) {
+			return; // the first search builds the whole index anyway
+		}
+		if (event.productId() == null) {
+			rebuild();
+			return;
+		}
+		Product product = productRepository.findById(event.productId()).orElse(null);
+		if (product == null) {
+			remove(event.productId());
+		} else {
+			index(product);
+		}
+	}
+
+	/**
+	 * Drop the current index and rebuild it from the database
+	 */
+	public void rebuild() {
+		List<Product> products = productRepository.findAll();
+		lock.writeLock().lock();
+		try {
+			documents = new HashMap<>();
+			postings = new TreeMap<>();
+			trigrams = new HashMap<>();
+			for (Product p : products) {
+				add(p);
+			}
+			loaded = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Add or replace a single product in the index
+	 */
+	public void index(Product product) {
+		lock.writeLock().lock();
+		try {
+			removeDocument(product.getId());
+			add(product);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove a single product from the index
+	 */
+	public void remove(Integer productId) {
+		lock.writeLock().lock();
+		try {
+			removeDocument(productId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Search the index
+	 * 
+	 * @param query free text typed by the customer
+	 * @return matching product ids mapped to their score, best match first (at
+	 *         most {@link #MAX_RESULTS}); empty when nothing matches
+	 */
+	public Map<Integer, Double> search(String query) {
+		Map<Integer, Double> ranked = new LinkedHashMap<>();
+		score(query).entrySet().stream()
+				.sorted(Map.Entry.<Integer, Double>comparingByValue().reversed()
+						.thenComparing(Map.Entry.<Integer, Double>comparingByKey().reversed()))
+				.limit(MAX_RESULTS)
+				.forEach(e -> ranked.put(e.getKey(), e.getValue()));
+		return ranked;
+	}
+
+	/**
+	 * Every product matching a query, unranked and without the
+	 * {@link #MAX_RESULTS} cap: for in-memory filters, which must not miss a
+	 * product. Never bind it into SQL: a common word matches more products than a
+	 * statement takes parameters
+	 * 
+	 * @param query free text typed in a search box
+	 */
+	public Set<Integer> matchingIds(String query) {
+		return score(query).keySet();
+	}
+
+	// Score of every product matching all the terms of the query
+	private Map<Integer, Double> score(String query) {
+		List<String> terms = TextUtil.tokenize(query);
+		if (terms.isEmpty()) {
+			return Map.of();
+		}
+		ensureLoaded();
+
+		lock.readLock().lock();
+		try {
+			Map<Integer, Double> scores = null;
+			for (String term : terms) {
+				Map<Integer, Double> termScores = new HashMap<>();
+				expand(term).forEach((indexedTerm, quality) -> {
+					for (Integer id : postings.get(indexedTerm)) {
+						double score = quality * documents.get(id).get(indexedTerm);
+						termScores.merge(id, score, Math::max);
+					}
+				});
+
+				// Every query term has to match (AND semantics)
+				if (scores == null) {
+					scores = termScores;
+				} else {
+					scores.keySet().retainAll(termScores.keySet());
+					scores.replaceAll((id, score) -> score + termScores.get(id));
+				}
+				if (scores.isEmpty()) {
+					return Map.of();
+				}
+			}
+			return scores;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void ensureLoaded() {
+		if (!loaded) {
+			synchronized (this) {
+				if (!loaded) {
+					rebuild();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find indexed terms matching a query term, mapped to the match quality
+	 */
+	private Map<String, Double> expand(String term) {
+		Map<String, Double> matches = new HashMap<>();
+
+		if (postings.containsKey(term)) {
+			matches.put(term, EXACT_MATCH);
+		}
+
+		for (String prefixed : postings.subMap(term, false, term + Character.MAX_VALUE, false).keySet()) {
+			matches.putIfAbsent(prefixed, PREFIX_MATCH);
+		}
+
+		// Typo tolerance: one edit for short words, two for longer ones
+		if (term.length() >= 3) {
+			int maxDistance = term.length() <= 4 ? 1 : 2;
+			Set<String> candidates = new HashSet<>();
+			for (String gram : trigramsOf(term)) {
+				Set<String> terms = trigrams.get(gram);
+				if (terms != null) {
+					candidates.addAll(terms);
+				}
+			}
+			for (String candidate : candidates) {
+				if (matches.containsKey(candidate) || Math.abs(candidate.length() - term.length()) > maxDistance) {
+					continue;
+				}
+				int distance = editDistance(term, candidate, maxDistance);
+				if (distance <= maxDistance) {
+					matches.put(candidate, distance == 1 ? FUZZY_MATCH_1 : FUZZY_MATCH_2);
+				}
+			}
+		}
+		return matches;
+	}
+
+	private void add(Product product) {
+		if (product.getId() == null) {
+			return;
+		}
+		Map<String, Double> terms = new HashMap<>();
+		for (String term : TextUtil.tokenize(product.getName())) {
+			terms.merge(term, NAME_WEIGHT, Math::max);
+		}
+		if (product.getCategory() != null) {
+			for (String term : TextUtil.tokenize(product.getCategory().getName())) {
+				terms.merge(term, CATEGORY_WEIGHT, Math::max);
+			}
+		}
+		documents.put(product.getId(), terms);
+		for (String term : terms.keySet()) {
+			postings.computeIfAbsent(term, k -> {
+				for (String gram : trigramsOf(k)) {
+					trigrams.computeIfAbsent(gram, g -> new HashSet<>()).add(k);
+				}
+				return new HashSet<>();
+			}).add(product.getId());
+		}
+	}
+
+	private void removeDocument(Integer productId) {
+		Map<String, Double> terms = documents.remove(productId);
+		if (terms == null) {
+			return;
+		}
+		for (String term : terms.keySet()) {
+			Set<Integer> ids = postings.get(term);
+			if (ids == null) {
+				continue;
+			}
+			ids.remove(productId);
+			if (ids.isEmpty()) {
+				postings.remove(term);
+				for (String gram : trigramsOf(term)) {
+					Set<String> gramTerms = trigrams.get(gram);
+					if (gramTerms != null) {
+						gramTerms.remove(term);
+						if (gramTerms.isEmpty()) {
+							trigrams.remove(gram);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static List<String> trigramsOf(String term) {
+		String padded = "$" + term + "$";
+		List<String> grams = new ArrayList<>();
+		for (int i = 0; i + 3 <= padded.length(); i++) {
+			grams.add(padded.substring(i, i + 3));
+		}
+		return grams;
+	}
+
+	/**
+	 * Levenshtein distance, giving up early once it exceeds the limit
+	 */
+	private static int editDistance(String a, String b, int limit) {
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++) {
+			previous[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++) {
+			current[0] = i;
+			int rowMin = current[0];
+			for (int j = 1; j <= b.length(); j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+				rowMin = Math.min(rowMin, current[j]);
+			}
+			if (rowMin > limit) {
+				return limit + 1;
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+}
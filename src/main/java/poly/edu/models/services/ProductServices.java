@@ -3,6 +3,9 @@ package poly.edu.models.services;
 import java.util.List;
 
 import poly.edu.models.entities.Product;
+import poly.edu.models.projections.ProductRow;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 
 public interface ProductServices {
 	
@@ -18,6 +21,10 @@ public interface ProductServices {
     
     List<Product> filterAndSort(String keyword, String categoryId, String sortBy);
     
+    CursorPage<Product> scroll(String keyword, String categoryId, Boolean available, String sortBy, Cursor cursor, int size);
+    
+    CursorPage<ProductRow> scrollRows(String keyword, String categoryId, Cursor cursor, int size);
+    
     List<Product> findAllDescById();
     
     boolean canDelete(Integer id);
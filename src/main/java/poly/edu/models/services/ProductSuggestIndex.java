@@ -0,0 +1,386 @@
+package poly.edu.models.services;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import poly.edu.models.entities.Category;
+import poly.edu.models.entities.Product;
+import poly.edu.models.repositories.CategoryRepository;
+import poly.edu.models.repositories.ProductRepository;
+import poly.edu.utils.TextUtil;
+
+/**
+ * Autocomplete for the storefront search box.
+ * 
+ * Product and category names are folded with {@link TextUtil#fold(String)} and
+ * stored in a compressed prefix (radix) trie, once for every word they start
+ * with, so "cuoi" suggests "Hoa Cưới". Every node caches the best
+ * {@link #MAX_SUGGESTIONS} entries of its subtree, ranked by popularity
+ * (quantity sold), so a lookup is a walk down the trie with no sorting and no
+ * database access. Sales move the weights as they are booked
+ * ({@link ProductSalesEvent}), without rebuilding the trie.
+ */
+@Service
+public class ProductSuggestIndex {
+
+	public static final int MAX_SUGGESTIONS = 10;
+
+	@Autowired
+	ProductRepository productRepository;
+
+	@Autowired
+	CategoryRepository categoryRepository;
+
+	@Autowired
+	BestSellerRanking bestSellerRanking;
+
+	/**
+	 * One autocomplete result
+	 * 
+	 * @param key    unique key, "p:{id}" for products and "c:{id}" for categories
+	 * @param label  text shown to the customer
+	 * @param url    page to open when the suggestion is picked, under the
+	 *               application's context path
+	 * @param type   "product" or "category"
+	 * @param weight popularity, higher ranks first
+	 */
+	public record Suggestion(String key, String label, String url, String type, long weight) {
+	}
+
+	private static final Comparator<Suggestion> RANKING = Comparator.comparingLong(Suggestion::weight).reversed()
+			.thenComparing(Suggestion::label);
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private Node root = new Node("");
+
+	// suggestion key -> the suggestion and the trie keys it was inserted under
+	private Map<String, Suggestion> suggestions = new HashMap<>();
+
+	// product id -> quantity sold, loaded when the trie is built and updated by sales
+	private Map<Integer, Long> sold = new HashMap<>();
+
+	// product id -> category id, to move the category's weight with the product's
+	private Map<Integer, String> categoryOf = new HashMap<>();
+
+	private volatile boolean loaded = false;
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onCatalogChanged(CatalogChangedEvent event) {
+		if (!loaded) {
+			return;
+		}
+		if (event.productId() == null) {
+			rebuild();
+			return;
+		}
+		Integer id = event.productId();
+		Product product = productRepository.findById(id).orElse(null);
+		lock.writeLock().lock();
+		try {
+			removeSuggestion("p:" + id);
+			String before = categoryOf.remove(id);
+			String after = product == null || product.getCategory() == null ? null : product.getCategory().getId();
+			if (after != null) {
+				categoryOf.put(id, after);
+			}
+			if (!Objects.equals(before, after)) {
+				long quantity = sold.getOrDefault(id, 0L);
+				reweigh("c:" + before, -quantity);
+				reweigh("c:" + after, quantity);
+			}
+			if (product != null) {
+				addProduct(product);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Products and their categories gain (or, for a cancelled order, lose) the
+	 * quantities just booked
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onSales(ProductSalesEvent event) {
+		if (!loaded) {
+			return;
+		}
+		lock.writeLock().lock();
+		try {
+			event.quantities().forEach((productId, quantity) -> {
+				sold.merge(productId, (long) quantity, Long::sum);
+				reweigh("p:" + productId, quantity);
+				reweigh("c:" + categoryOf.get(productId), quantity);
+			});
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Rebuild the whole trie from the database
+	 */
+	public void rebuild() {
+		List<Product> products = productRepository.findAll();
+		List<Category> categories = categoryRepository.findAll();
+		Map<Integer, Long> quantities = new HashMap<>();
+		for (Product p : products) {
+			long quantity = bestSellerRanking.sold(p.getId(), BestSellerRanking.Window.ALL);
+			if (quantity != 0) {
+				quantities.put(p.getId(), quantity);
+			}
+		}
+
+		lock.writeLock().lock();
+		try {
+			root = new Node("");
+			suggestions = new HashMap<>();
+			sold = quantities;
+			categoryOf = new HashMap<>();
+
+			Map<String, Long> categoryWeights = new HashMap<>();
+			for (Product p : products) {
+				addProduct(p);
+				if (p.getCategory() != null) {
+					categoryOf.put(p.getId(), p.getCategory().getId());
+					categoryWeights.merge(p.getCategory().getId(), weightOf(p), Long::sum);
+				}
+			}
+			for (Category c : categories) {
+				add(new Suggestion("c:" + c.getId(), c.getName(), "/products?categoryId=" + c.getId(), "category",
+						categoryWeights.getOrDefault(c.getId(), 0L)));
+			}
+			loaded = true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Suggest products and categories whose name (or one of its words) starts with
+	 * the typed text
+	 * 
+	 * @param query the text typed so far
+	 * @param limit maximum number of suggestions, capped at
+	 *              {@link #MAX_SUGGESTIONS}
+	 * @return suggestions, most popular first
+	 */
+	public List<Suggestion> suggest(String query, int limit) {
+		String prefix = TextUtil.fold(query);
+		if (prefix.isEmpty() || limit <= 0) {
+			return List.of();
+		}
+		ensureLoaded();
+
+		lock.readLock().lock();
+		try {
+			Node node = root;
+			int i = 0;
+			while (i < prefix.length()) {
+				Node child = node.children.get(prefix.charAt(i));
+				if (child == null) {
+					return List.of();
+				}
+				int common = commonPrefix(child.edge, prefix, i);
+				if (i + common == prefix.length()) {
+					node = child; // the prefix ends on or inside this edge
+					break;
+				}
+				if (common < child.edge.length()) {
+					return List.of();
+				}
+				i += common;
+				node = child;
+			}
+			List<Suggestion> top = node.top;
+			String base = contextPath();
+			return top.subList(0, Math.min(Math.min(limit, MAX_SUGGESTIONS), top.size())).stream()
+					.map(s -> new Suggestion(s.key(), s.label(), base + s.url(), s.type(), s.weight()))
+					.toList();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Context path of the current request, so links work when the application is
+	 * not deployed at the root; empty outside a request
+	 */
+	private static String contextPath() {
+		if (RequestContextHolder.getRequestAttributes() == null) {
+			return "";
+		}
+		String path = ServletUriComponentsBuilder.fromCurrentContextPath().build().getPath();
+		return path == null ? "" : path;
+	}
+
+	private void ensureLoaded() {
+		if (!loaded) {
+			synchronized (this) {
+				if (!loaded) {
+					rebuild();
+				}
+			}
+		}
+	}
+
+	private long weightOf(Product product) {
+		return sold.getOrDefault(product.getId(), 0L);
+	}
+
+	private void addProduct(Product product) {
+		if (product.getId() == null || Boolean.FALSE.equals(product.getAvailable())) {
+			return; // unavailable products are not suggested
+		}
+		add(new Suggestion("p:" + product.getId(), product.getName(), "/products/" + product.getId(), "product",
+				weightOf(product)));
+	}
+
+	/**
+	 * Re-rank a suggestion whose weight changed; it has to leave the trie and come
+	 * back, as the cached top lists along its keys are sorted by weight
+	 */
+	private void reweigh(String suggestionKey, long delta) {
+		Suggestion suggestion = suggestions.get(suggestionKey);
+		if (suggestion == null || delta == 0) {
+			return;
+		}
+		removeSuggestion(suggestionKey);
+		add(new Suggestion(suggestion.key(), suggestion.label(), suggestion.url(), suggestion.type(),
+				suggestion.weight() + delta));
+	}
+
+	private void add(Suggestion suggestion) {
+		suggestions.put(suggestion.key(), suggestion);
+		for (String key : keysOf(suggestion.label())) {
+			insert(key, suggestion);
+		}
+	}
+
+	private void removeSuggestion(String suggestionKey) {
+		Suggestion suggestion = suggestions.remove(suggestionKey);
+		if (suggestion == null) {
+			return;
+		}
+		for (String key : keysOf(suggestion.label())) {
+			delete(key, suggestion);
+		}
+	}
+
+	/**
+	 * Trie keys of a label: the folded label starting at each of its words
+	 */
+	private static Set<String> keysOf(String label) {
+		List<String> words = TextUtil.tokenize(label);
+		Set<String> keys = new LinkedHashSet<>();
+		for (int i = 0; i < words.size(); i++) {
+			keys.add(String.join(" ", words.subList(i, words.size())));
+		}
+		return keys;
+	}
+
+	private void insert(String key, Suggestion suggestion) {
+		List<Node> path = new ArrayList<>();
+		Node node = root;
+		path.add(node);
+		int i = 0;
+		while (i < key.length()) {
+			char c = key.charAt(i);
+			Node child = node.children.get(c);
+			if (child == null) {
+				child = new Node(key.substring(i));
+				node.children.put(c, child);
+				i = key.length();
+			} else {
+				int common = commonPrefix(child.edge, key, i);
+				if (common < child.edge.length()) {
+					// Split the edge at the point where the key diverges
+					Node middle = new Node(child.edge.substring(0, common));
+					child.edge = child.edge.substring(common);
+					middle.children.put(child.edge.charAt(0), child);
+					node.children.put(c, middle);
+					child = middle;
+				}
+				i += common;
+			}
+			node = child;
+			path.add(node);
+		}
+		node.entries.add(suggestion);
+		for (int j = path.size() - 1; j >= 0; j--) {
+			path.get(j).recomputeTop();
+		}
+	}
+
+	private void delete(String key, Suggestion suggestion) {
+		List<Node> path = new ArrayList<>();
+		Node node = root;
+		path.add(node);
+		int i = 0;
+		while (i < key.length()) {
+			Node child = node.children.get(key.charAt(i));
+			if (child == null || !key.startsWith(child.edge, i)) {
+				return;
+			}
+			i += child.edge.length();
+			node = child;
+			path.add(node);
+		}
+		node.entries.remove(suggestion);
+		for (int j = path.size() - 1; j >= 0; j--) {
+			Node current = path.get(j);
+			if (j > 0 && current.entries.isEmpty() && current.children.isEmpty()) {
+				path.get(j - 1).children.remove(current.edge.charAt(0));
+			} else {
+				current.recomputeTop();
+			}
+		}
+	}
+
+	private static int commonPrefix(String edge, String key, int offset) {
+		int n = Math.min(edge.length(), key.length() - offset);
+		int i = 0;
+		while (i < n && edge.charAt(i) == key.charAt(offset + i)) {
+			i++;
+		}
+		return i;
+	}
+
+	private static final class Node {
+
+		String edge;
+		final Map<Character, Node> children = new HashMap<>();
+		final Set<Suggestion> entries = new HashSet<>();
+		List<Suggestion> top = List.of();
+
+		Node(String edge) {
+			this.edge = edge;
+		}
+
+		/**
+		 * Merge the node's own entries with the cached best entries of its children
+		 */
+		void recomputeTop() {
+			Set<Suggestion> candidates = new LinkedHashSet<>(entries);
+			for (Node child : children.values()) {
+				candidates.addAll(child.top);
+			}
+			top = candidates.stream().sorted(RANKING).limit(MAX_SUGGESTIONS).toList();
+		}
+	}
+}
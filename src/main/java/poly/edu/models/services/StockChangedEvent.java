@@ -0,0 +1,12 @@
+package poly.edu.models.services;
+
+/**
+ * Published by the stock service when a checkout has taken units of a product.
+ * Only the amount changed, so the {@link CatalogSnapshot} patches it in after
+ * the surrounding transaction commits instead of reloading the catalog.
+ * 
+ * @param productId id of the product
+ * @param amount    units left once the stock was taken
+ */
+public record StockChangedEvent(Integer productId, int amount) {
+}
@@ -0,0 +1,11 @@
+package poly.edu.models.services;
+
+public interface StockServices {
+
+	/**
+	 * Take units of a product out of stock, within the caller's transaction
+	 * 
+	 * @return false when fewer units are left, in which case nothing is taken
+	 */
+	boolean decrement(Integer productId, int quantity);
+}
@@ -0,0 +1,302 @@
+package poly.edu.models.services;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import poly.edu.models.repositories.AccountRepository;
+import poly.edu.models.repositories.ProductRepository;
+import poly.edu.utils.ImageUtil;
+
+/**
+ * Finds uploads that no product or account refers to any more (replaced or
+ * deleted images, failed saves, abandoned registrations) and moves them out of
+ * the upload directory. This is the only place uploads are removed: they are
+ * content-addressed, so one file may be shared by several rows, and an upload
+ * of the same bytes on any node may be about to reference a file that just
+ * lost its last row. {@link ImageUtil#save} touches the file it finds in that
+ * case, and the grace period below covers it. Controllers therefore never
+ * delete the image a save or delete leaves behind.
+ *
+ * Each run covers the next few top-level entries of the upload directory (the
+ * content-addressed shards, then legacy files), so a large volume is swept a
+ * slice at a time and a full pass takes several runs. Files are compared with
+ * the image names referenced by Products and Accounts, read as plain columns;
+ * resized variants of a referenced image are referenced too. Files younger
+ * than the grace period are left alone, as they may belong to a form that has
+ * not been committed yet. Orphans go to a dated quarantine directory next to
+ * the upload directory, where they stay for the retention period before being
+ * deleted, so a mistake can still be undone by moving the file back.
+ */
+@Service
+public class UploadSweeper {
+
+	/**
+	 * Outcome of one run
+	 *
+	 * @param scanned          files examined
+	 * @param quarantined      orphans moved to quarantine
+	 * @param quarantinedBytes their size
+	 * @param purged           quarantined files deleted after the retention period
+	 * @param purgedBytes      their size: space given back to the volume
+	 * @param next             where the next run starts, null when the pass is complete
+	 */
+	public record Report(Instant startedAt, long millis, int scanned, int quarantined, long quarantinedBytes,
+			int purged, long purgedBytes, String next) {
+	}
+
+	@Autowired
+	ProductRepository productRepository;
+
+	@Autowired
+	AccountRepository accountRepository;
+
+	@Value("${upload.sweep.grace:P1D}")
+	Duration grace;
+
+	@Value("${upload.sweep.retention:P7D}")
+	Duration retention;
+
+	// Top-level entries (shard directories or legacy files) per run
+	@Value("${upload.sweep.batch:32}")
+	int batch;
+
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	// Last top-level entry swept, the next run resumes after it
+	private volatile String cursor;
+
+	private volatile Report last;
+
+	private volatile long totalReclaimed;
+
+	@Scheduled(cron = "${upload.sweep.cron:0 */15 * * * *}")
+	public void scheduled() {
+		Report report = sweep();
+		if (report != null && (report.quarantined() > 0 || report.purged() > 0)) {
+			System.out.println("Upload sweep: " + report);
+		}
+	}
+
+	/**
+	 * Sweep the next slice of the upload directory and purge expired quarantine
+	 *
+	 * @return the report, or null when a sweep is already running
+	 */
+	public Report sweep() {
+		if (!running.compareAndSet(false, true)) {
+			return null;
+		}
+		try {
+			Instant startedAt = Instant.now();
+			Path uploads = ImageUtil.uploadDir();
+			Counter swept = new Counter();
+			String next = null;
+			if (Files.isDirectory(uploads)) {
+				// Built before listing: a file referenced after this point is younger than the grace period
+				Set<Path> referenced = referenced();
+				Instant cutoff = startedAt.minus(grace);
+				Path quarantine = quarantine().resolve(LocalDate.now().toString());
+				List<Path> slice = slice(uploads);
+				for (Path entry : slice) {
+					try (Stream<Path> files = Files.walk(entry)) {
+						files.filter(file -> Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS))
+								.forEach(file -> {
+									swept.scanned++;
+									if (!referenced.contains(file)) {
+										move(file, uploads, quarantine, cutoff, swept);
+									}
+								});
+					} catch (IOException e) {
+						System.err.println("Upload sweep: cannot read " + entry + ": " + e.getMessage());
+					}
+				}
+				next = slice.size() < batch ? null : slice.get(slice.size() - 1).getFileName().toString();
+				cursor = next;
+			}
+			Counter purged = purge(startedAt);
+			Report report = new Report(startedAt, Duration.between(startedAt, Instant.now()).toMillis(),
+					swept.scanned, swept.files, swept.bytes, purged.files, purged.bytes, next);
+			last = report;
+			totalReclaimed += purged.bytes;
+			return report;
+		} finally {
+			running.set(false);
+		}
+	}
+
+	/**
+	 * Last report and totals, for /dashboard/uploads/sweep
+	 */
+	public Map<String, Object> statistics() {
+		Map<String, Object> statistics = new LinkedHashMap<>();
+		statistics.put("last", last);
+		statistics.put("cursor", cursor);
+		statistics.put("reclaimedBytes", totalReclaimed);
+		statistics.put("quarantineBytes", size(quarantine()));
+		return statistics;
+	}
+
+	/**
+	 * Files the database refers to, with every possible variant of each
+	 */
+	private Set<Path> referenced() {
+		Set<Path> referenced = new HashSet<>();
+		List<String> names = new ArrayList<>(productRepository.findDistinctImages());
+		names.addAll(accountRepository.findDistinctPhotos());
+		for (String name : names) {
+			if (name.isBlank()) {
+				continue;
+			}
+			try {
+				referenced.add(ImageUtil.resolve(name));
+				for (ImageVariants.Variant variant : ImageVariants.Variant.values()) {
+					referenced.add(ImageUtil.resolve(ImageUtil.variant(name, variant.suffix())));
+				}
+			} catch (IllegalArgumentException e) {
+				// not a name that could point into the upload directory
+			}
+		}
+		return referenced;
+	}
+
+	/**
+	 * The next batch of top-level entries after the cursor, by name, wrapping
+	 * around at the end
+	 */
+	private List<Path> slice(Path uploads) {
+		List<Path> entries = new ArrayList<>();
+		try (DirectoryStream<Path> children = Files.newDirectoryStream(uploads)) {
+			for (Path child : children) {
+				entries.add(child);
+			}
+		} catch (IOException e) {
+			System.err.println("Upload sweep: cannot list " + uploads + ": " + e.getMessage());
+			return entries;
+		}
+		Collections.sort(entries);
+		String after = cursor;
+		List<Path> slice = new ArrayList<>(batch);
+		for (Path entry : entries) {
+			if (after != null && entry.getFileName().toString().compareTo(after) <= 0) {
+				continue;
+			}
+			slice.add(entry);
+			if (slice.size() == batch) {
+				break;
+			}
+		}
+		return slice;
+	}
+
+	private static void move(Path file, Path uploads, Path quarantine, Instant cutoff, Counter swept) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class,
+					LinkOption.NOFOLLOW_LINKS);
+			if (attributes.lastModifiedTime().toInstant().isAfter(cutoff)) {
+				return; // uploading now, or being referenced again
+			}
+			Path relative = uploads.relativize(file);
+			Path target = quarantine.resolve(relative);
+			Files.createDirectories(target.getParent());
+			Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+			ImageUtil.changed(relative.toString().replace('\\', '/'));
+			swept.files++;
+			swept.bytes += attributes.size();
+		} catch (IOException e) {
+			System.err.println("Upload sweep: cannot quarantine " + file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Delete the quarantine days older than the retention period
+	 */
+	private Counter purge(Instant now) {
+		Counter purged = new Counter();
+		Path quarantine = quarantine();
+		if (!Files.isDirectory(quarantine)) {
+			return purged;
+		}
+		LocalDate expired = now.minus(retention).atZone(ZoneId.systemDefault()).toLocalDate();
+		try (DirectoryStream<Path> days = Files.newDirectoryStream(quarantine, Files::isDirectory)) {
+			for (Path day : days) {
+				try {
+					if (!LocalDate.parse(day.getFileName().toString()).isBefore(expired)) {
+						continue;
+					}
+				} catch (DateTimeParseException e) {
+					continue; // not ours
+				}
+				try (Stream<Path> files = Files.walk(day)) {
+					// Deepest first, so directories are empty when their turn comes
+					files.sorted(Collections.reverseOrder()).forEach(path -> {
+						try {
+							long size = Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) ? Files.size(path) : -1;
+							Files.delete(path);
+							if (size >= 0) {
+								purged.files++;
+								purged.bytes += size;
+							}
+						} catch (IOException e) {
+							System.err.println("Upload sweep: cannot delete " + path + ": " + e.getMessage());
+						}
+					});
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Upload sweep: cannot purge " + quarantine + ": " + e.getMessage());
+		}
+		return purged;
+	}
+
+	// Next to the upload directory, so quarantined files are never served
+	private static Path quarantine() {
+		return ImageUtil.uploadDir().resolveSibling(".quarantine");
+	}
+
+	private static long size(Path dir) {
+		if (!Files.isDirectory(dir)) {
+			return 0;
+		}
+		try (Stream<Path> files = Files.walk(dir)) {
+			return files.filter(Files::isRegularFile).mapToLong(file -> {
+				try {
+					return Files.size(file);
+				} catch (IOException e) {
+					return 0;
+				}
+			}).sum();
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	private static class Counter {
+		int scanned;
+		int files;
+		long bytes;
+	}
+}
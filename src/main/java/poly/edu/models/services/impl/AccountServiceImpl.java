@@ -3,11 +3,21 @@ package poly.edu.models.services.impl;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 
 import poly.edu.models.entities.Account;
+import poly.edu.models.projections.AccountRow;
 import poly.edu.models.repositories.AccountRepository;
+import poly.edu.models.repositories.AccountSpecifications;
+import poly.edu.models.repositories.KeysetSpecifications;
 import poly.edu.models.services.AccountServices;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 
 @Service
 public class AccountServiceImpl implements AccountServices {
@@ -15,6 +25,9 @@ public class AccountServiceImpl implements AccountServices {
 	@Autowired
 	AccountRepository accountRepository;
 	
+	@PersistenceContext
+	EntityManager entityManager;
+	
 	@Override
 	public Account findById(String username) {
 		// TODO Auto-generated method stub
@@ -72,5 +85,19 @@ public class AccountServiceImpl implements AccountServices {
 		        }).toList();
 	}
 
+	@Override
+	public CursorPage<Account> scroll(String keyword, Boolean activated, Boolean admin, Cursor cursor, int size) {
+		return KeysetSpecifications.scroll(accountRepository, Account.class,
+				AccountSpecifications.filter(keyword, activated, admin), Sort.by(Sort.Direction.ASC, "username"), cursor, size);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public CursorPage<AccountRow> scrollRows(String keyword, Boolean activated, Boolean admin, Cursor cursor, int size) {
+		return KeysetSpecifications.scroll(entityManager, Account.class, AccountRow.class,
+				AccountSpecifications::rowColumns, AccountSpecifications.filter(keyword, activated, admin),
+				Sort.by(Sort.Direction.ASC, "username"), cursor, size);
+	}
+
 
 }
@@ -3,11 +3,18 @@ package poly.edu.models.services.impl;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import poly.edu.models.entities.Category;
 import poly.edu.models.repositories.CategoryRepository;
+import poly.edu.models.repositories.CategorySpecifications;
+import poly.edu.models.repositories.KeysetSpecifications;
+import poly.edu.models.services.CatalogChangedEvent;
 import poly.edu.models.services.CategoryServices;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 
 @Service
 public class CategoryServiceImpl implements CategoryServices {
@@ -15,16 +22,21 @@ public class CategoryServiceImpl implements CategoryServices {
 	@Autowired
 	CategoryRepository categoryRepository;
 	
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+	
 	@Override
 	public void save(Category category) {
 		// TODO Auto-generated method stub
 		categoryRepository.save(category);
+		eventPublisher.publishEvent(CatalogChangedEvent.category());
 	}
 
 	@Override
 	public void delete(String id) {
 		// TODO Auto-generated method stub
 		categoryRepository.deleteById(id);
+		eventPublisher.publishEvent(CatalogChangedEvent.category());
 	}
 
 	@Override
@@ -55,4 +67,10 @@ public class CategoryServiceImpl implements CategoryServices {
 		}).toList();
 	}
 
+	@Override
+	public CursorPage<Category> scroll(String keyword, Cursor cursor, int size) {
+		return KeysetSpecifications.scroll(categoryRepository, Category.class,
+				CategorySpecifications.nameContains(keyword), Sort.by(Sort.Direction.ASC, "id"), cursor, size);
+	}
+
 }
@@ -2,15 +2,22 @@ package poly.edu.models.services.impl;
 
 import java.util.List;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import poly.edu.models.entities.Discount;
 import poly.edu.models.repositories.DiscountRepository;
+import poly.edu.models.repositories.DiscountSpecifications;
+import poly.edu.models.repositories.KeysetSpecifications;
 import poly.edu.models.services.DiscountServices;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 
 @Service
 public class DiscountServiceImpl implements DiscountServices {
 
+	@Autowired
 	DiscountRepository discountRepository;
 	
 	@Override
@@ -67,5 +74,11 @@ public class DiscountServiceImpl implements DiscountServices {
 			return true;
 		}).toList();
 	}
+
+	@Override
+	public CursorPage<Discount> scroll(String keyword, String discountType, Boolean active, Cursor cursor, int size) {
+		return KeysetSpecifications.scroll(discountRepository, Discount.class,
+				DiscountSpecifications.filter(keyword, discountType, active), Sort.by(Sort.Direction.DESC, "id"), cursor, size);
+	}
 	
 }
@@ -1,21 +1,40 @@
 package poly.edu.models.services.impl;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import poly.edu.models.cart.Cart;
+import poly.edu.models.cart.CartLine;
+import poly.edu.models.entities.Account;
 import poly.edu.models.entities.Order;
 import poly.edu.models.entities.OrderDetail;
 import poly.edu.models.entities.Product;
+import poly.edu.models.projections.OrderRow;
+import poly.edu.models.repositories.KeysetSpecifications;
 import poly.edu.models.repositories.OrderRepository;
+import poly.edu.models.repositories.OrderSpecifications;
 import poly.edu.models.repositories.ProductRepository;
+import poly.edu.models.services.BestSellerRanking;
+import poly.edu.models.services.CatalogSnapshot;
+import poly.edu.models.services.OrderPlacedEvent;
 import poly.edu.models.services.OrderServices;
+import poly.edu.models.services.StockServices;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
 
 @Service
 public class OrderServiceImpl implements OrderServices {
@@ -26,10 +45,70 @@ public class OrderServiceImpl implements OrderServices {
 	@Autowired
 	ProductRepository productRepository;
 	
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+	
+	@Autowired
+	BestSellerRanking bestSellerRanking;
+	
+	@Autowired
+	CatalogSnapshot catalogSnapshot;
+	
+	@Autowired
+	StockServices stockServices;
+	
+	@PersistenceContext
+	EntityManager entityManager;
+	
 	@Override
 	@Transactional
 	public void save(Order order) {
+		boolean placed = order.getId() == null;
 		orderRepository.save(order);
+		if (placed) {
+			if (BestSellerRanking.counts(order.getStatus())) {
+				bestSellerRanking.record(order, 1);
+			}
+			eventPublisher.publishEvent(new OrderPlacedEvent(order.getId(),
+					order.getOrderDetails().stream().map(od -> od.getProduct().getId()).toList()));
+		}
+	}
+
+	@Override
+	@Transactional
+	public Order placeOrder(Account account, String address, Cart cart) {
+		// Lowest product id first: two checkouts lock shared rows in the same order, so they
+		// queue instead of deadlocking
+		Integer[] lines = new Integer[cart.size()];
+		for (int i = 0; i < lines.length; i++) {
+			lines[i] = i;
+		}
+		Arrays.sort(lines, Comparator.comparingInt(cart::productId));
+		for (int i : lines) {
+			if (!stockServices.decrement(cart.productId(i), cart.quantity(i))) {
+				throw new RuntimeException("Insufficient stock"); // rolls back what was taken
+			}
+		}
+
+		Order order = new Order();
+		order.setAccount(account);
+		order.setAddress(address);
+		order.setCreateDate(LocalDate.now());
+		for (int i = 0; i < cart.size(); i++) {
+			// Charged at today's price, which must be the one the customer confirmed
+			Product product = productRepository.findById(cart.productId(i)).orElseThrow();
+			if (product.getPrice() != cart.price(i)) {
+				throw new RuntimeException("Price changed"); // rolls back the stock taken
+			}
+			OrderDetail orderDetail = new OrderDetail();
+			orderDetail.setProduct(product);
+			orderDetail.setPrice(product.getPrice());
+			orderDetail.setQuantity(cart.quantity(i));
+			orderDetail.setOrder(order);
+			order.getOrderDetails().add(orderDetail);
+		}
+		save(order);
+		return order;
 	}
 
 	@Override
@@ -45,11 +124,11 @@ public class OrderServiceImpl implements OrderServices {
 
 	@Override
 	public Order findById(Long id) {
-		return orderRepository.findById(id).orElse(null);
+		return orderRepository.findDetailedById(id).orElse(null);
 	}
 
 	@Override
-	public Order addOrderDetailToOrder(Order order, Integer productId, Integer quantity) {
+	public Cart addOrderDetailToOrder(Cart cart, Integer productId, Integer quantity) {
 		Product product = productRepository.findById(productId).orElse(null);
 
 		if (product == null) {
@@ -71,48 +150,55 @@ public class OrderServiceImpl implements OrderServices {
 			throw new RuntimeException("Invalid quantity");
 		}
 
-        // Check if product already in cart
-        for (OrderDetail item : order.getOrderDetails()) {
-            if (item.getProduct().getId().equals(productId)) {
-            	int newQuantity = item.getQuantity() + quantity;
-            	// Check if total quantity exceeds stock
-            	if (product.getAmount() < newQuantity) {
-            		throw new RuntimeException("Insufficient stock");
-            	}
-                item.setQuantity(newQuantity);
-                return order;
-            }
+        // Check if total quantity exceeds stock (product already in cart)
+        if (product.getAmount() < cart.quantityOf(productId) + quantity) {
+        	throw new RuntimeException("Insufficient stock");
         }
         
-        // New cart
-        Order newOrder = new Order();
-        
-        // New item
-        OrderDetail orderDetail = new OrderDetail();
-        orderDetail.setProduct(product);
-        orderDetail.setPrice(product.getPrice());
-        orderDetail.setQuantity(quantity);
-        
-        //Add cart into item
-        orderDetail.setOrder(newOrder);
-        
-        //Add item into cart
-        order.getOrderDetails().add(orderDetail);
-        		
-		return order;
+        // Add to the line, or a new line with today's price
+        try {
+        	cart.add(productId, quantity, product.getPrice());
+        } catch (IllegalStateException e) {
+        	throw new RuntimeException(e.getMessage());
+        }
+		return cart;
 	}
 	
 	@Override
-	public boolean validateStock(Order order) {
-		for (OrderDetail od : order.getOrderDetails()) {
-			Product product = productRepository.findById(od.getProduct().getId()).orElse(null);
-			if (product.getAmount() < od.getQuantity()) {
+	public boolean validateStock(Cart cart) {
+		for (int i = 0; i < cart.size(); i++) {
+			Product product = productRepository.findById(cart.productId(i)).orElse(null);
+			if (product == null || product.getAmount() < cart.quantity(i)) {
 				return false;
 			}
 		}
 		return true;
 	}
 	
+	@Override
+	public List<CartLine> cartLines(Cart cart) {
+		List<CartLine> lines = new ArrayList<>(cart.size());
+		List<Integer> deleted = new ArrayList<>();
+		for (int i = 0; i < cart.size(); i++) {
+			Product product = catalogSnapshot.findById(cart.productId(i));
+			if (product == null) {
+				deleted.add(cart.productId(i));
+			} else {
+				double seen = cart.price(i);
+				boolean changed = cart.reprice(product.getId(), product.getPrice());
+				lines.add(new CartLine(product, cart.quantity(i), product.getPrice(), changed ? seen : null));
+			}
+		}
+		// Products deleted since they were added leave the cart
+		deleted.forEach(cart::remove);
+		return lines;
+	}
+	
+	@Override
+	public boolean reprice(Cart cart) {
+		return cartLines(cart).stream().anyMatch(CartLine::priceChanged);
+	}
+	
 	@Override
 	public Page<Order> searchOrders(String keyword, String status, LocalDate fromDate, LocalDate toDate, Pageable pageable) {
 		return orderRepository.searchOrders(keyword, status, fromDate, toDate, pageable);
@@ -123,8 +209,14 @@ public class OrderServiceImpl implements OrderServices {
 	public void updateStatus(Long orderId, String status) {
 		Order order = orderRepository.findById(orderId)
 			.orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
+		boolean counted = BestSellerRanking.counts(order.getStatus());
 		order.setStatus(status);
 		orderRepository.save(order);
+		
+		// Cancelling (or restoring) an order moves its quantities out of (into) the rankings
+		if (counted != BestSellerRanking.counts(status)) {
+			bestSellerRanking.record(order, counted ? -1 : 1);
+		}
 	}
 	
 	@Override
@@ -142,4 +234,18 @@ public class OrderServiceImpl implements OrderServices {
 		// TODO Auto-generated method stub
 	    return orderRepository.findAll(Sort.by(Sort.Direction.DESC, "id"));
 	}
+
+	@Override
+	public List<Order> findByUsername(String username) {
+		return orderRepository.findByAccountUsernameOrderByIdAsc(username);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public CursorPage<OrderRow> scrollRows(String keyword, String status, LocalDate fromDate, LocalDate toDate,
+			Cursor cursor, int size) {
+		return KeysetSpecifications.scroll(entityManager, Order.class, OrderRow.class,
+				OrderSpecifications::rowColumns, OrderSpecifications.filter(keyword, status, fromDate, toDate),
+				Sort.by(Sort.Direction.DESC, "id"), cursor, size);
+	}
 }
@@ -3,15 +3,30 @@ package poly.edu.models.services.impl;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
 import poly.edu.models.entities.Product;
+import poly.edu.models.projections.ProductRow;
 import poly.edu.models.repositories.DiscountRepository;
+import poly.edu.models.repositories.KeysetSpecifications;
 import poly.edu.models.repositories.OrderDetailRepository;
 import poly.edu.models.repositories.ProductRepository;
+import poly.edu.models.repositories.ProductSpecifications;
+import poly.edu.models.services.BestSellerRanking;
+import poly.edu.models.services.CatalogChangedEvent;
 import poly.edu.models.services.ProductServices;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
+import poly.edu.utils.TextUtil;
 
 @Service
 public class ProductServiceImpl implements ProductServices {
@@ -25,10 +40,20 @@ public class ProductServiceImpl implements ProductServices {
 	@Autowired
 	DiscountRepository discountRepository;
 	
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+	
+	@Autowired
+	BestSellerRanking bestSellerRanking;
+	
+	@PersistenceContext
+	EntityManager entityManager;
+	
 	@Override
 	public void save(Product product) {
 		// TODO Auto-generated method stub
 		productRepository.save(product);
+		eventPublisher.publishEvent(CatalogChangedEvent.product(product.getId()));
 	}
 
 	@Override
@@ -40,6 +65,7 @@ public class ProductServiceImpl implements ProductServices {
 		}
 		
 		productRepository.deleteById(id);
+		eventPublisher.publishEvent(CatalogChangedEvent.product(id));
 		return productRepository.findById(id).orElse(null);
 	}
 
@@ -57,46 +83,69 @@ public class ProductServiceImpl implements ProductServices {
 
 	@Override
 	public List<Product> filter(String keyword, String categoryId) {
-		// TODO Auto-generated method stub
-		List<Product> products = productRepository.findAll(Sort.by(Sort.Direction.DESC, "id"));;
-		
-		return products.stream().filter(p -> {
-			
-			if(keyword != null && !keyword.isBlank()) {
-				boolean productFound = p.getName() != null && p.getName().toLowerCase().contains(keyword.toLowerCase());
-				if (!productFound)
-					return false;
-			}
-			
-			if (categoryId != null && !categoryId.isBlank()) {
-				boolean categoryIdMatched= p.getCategory().getId() != null && p.getCategory().getId().equals(categoryId);
-				if (!categoryIdMatched) {
-					return false;
-				}
-			}
-			
-			return true;
-		}).toList();
+		// Keyword and category are matched by the database, newest first
+		return productRepository.findAll(filterSpec(keyword, categoryId, null), Sort.by(Sort.Direction.DESC, "id"));
 	}
 
 	@Override
 	public List<Product> filterAndSort(String keyword, String categoryId, String sortBy) {
-		// TODO Auto-generated method stub
-		List<Product> filtered = filter(keyword, categoryId);
-		
+		List<Product> products = productRepository.findAll(filterSpec(keyword, categoryId, null), resolveSort(sortBy));
+		if ("bestseller".equals(sortBy)) {
+			// Popularity is not a column: reorder by the maintained ranking
+			return bestSellerRanking.sort(products, Product::getId, categoryId, BestSellerRanking.DEFAULT_WINDOW);
+		}
+		return products;
+	}
+
+	@Override
+	public CursorPage<Product> scroll(String keyword, String categoryId, Boolean available, String sortBy,
+			Cursor cursor, int size) {
+		// Filtering, sorting and keyset paging are all pushed into the SQL query
+		return KeysetSpecifications.scroll(productRepository, Product.class,
+				filterSpec(keyword, categoryId, available), resolveSort(sortBy), cursor, size);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public CursorPage<ProductRow> scrollRows(String keyword, String categoryId, Cursor cursor, int size) {
+		return KeysetSpecifications.scroll(entityManager, Product.class, ProductRow.class,
+				ProductSpecifications::rowColumns, filterSpec(keyword, categoryId, null), resolveSort(null), cursor,
+				size);
+	}
+
+	/**
+	 * Build the database filter. The keyword is matched in SQL on the folded name:
+	 * the search index may hit far more products than a statement can take as
+	 * bind parameters
+	 */
+	private Specification<Product> filterSpec(String keyword, String categoryId, Boolean available) {
+		return ProductSpecifications.filter(keyword, categoryId, available);
+	}
+
+	/**
+	 * Fill the folded name of rows written before it existed, a page at a time
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void backfillSearchNames() {
+		List<Product> products;
+		while (!(products = productRepository.findTop500BySearchNameIsNull()).isEmpty()) {
+			products.forEach(p -> p.setSearchName(TextUtil.fold(p.getName())));
+			productRepository.saveAll(products);
+		}
+	}
+
+	/**
+	 * Map the storefront sortBy option to a database sort (default: newest first)
+	 */
+	private Sort resolveSort(String sortBy) {
 		if (sortBy != null && !sortBy.isBlank()) {
 			return switch (sortBy) {
-				case "price-asc" -> filtered.stream()
-					.sorted((p1, p2) -> Double.compare(p1.getPrice(), p2.getPrice()))
-					.toList();
-				case "price-desc" -> filtered.stream()
-					.sorted((p1, p2) -> Double.compare(p2.getPrice(), p1.getPrice()))
-					.toList();
-				default -> filtered;
+				case "price-asc" -> Sort.by(Sort.Direction.ASC, "price").and(Sort.by(Sort.Direction.DESC, "id"));
+				case "price-desc" -> Sort.by(Sort.Direction.DESC, "price").and(Sort.by(Sort.Direction.DESC, "id"));
+				default -> Sort.by(Sort.Direction.DESC, "id");
 			};
 		}
-		
-		return filtered;
+		return Sort.by(Sort.Direction.DESC, "id");
 	}
 
 	@Override
@@ -122,6 +171,7 @@ public class ProductServiceImpl implements ProductServices {
 		if (product != null) {
 			product.setAvailable(false);
 			productRepository.save(product);
+			eventPublisher.publishEvent(CatalogChangedEvent.product(id));
 		}
 	}
 }
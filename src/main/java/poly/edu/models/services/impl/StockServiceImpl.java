@@ -0,0 +1,35 @@
+package poly.edu.models.services.impl;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import poly.edu.models.repositories.ProductRepository;
+import poly.edu.models.services.StockChangedEvent;
+import poly.edu.models.services.StockServices;
+
+@Service
+public class StockServiceImpl implements StockServices {
+
+	@Autowired
+	ProductRepository productRepository;
+
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+
+	// A conditional UPDATE instead of read, subtract, save: the row lock makes a
+	// second buyer wait, then see the amount the first one left, without retries.
+	// The cached product is evicted after commit by CatalogCache
+	@Override
+	@Transactional
+	public boolean decrement(Integer productId, int quantity) {
+		if (productRepository.decrementAmount(productId, quantity) == 0) {
+			return false;
+		}
+		// Patched into the snapshot after commit, not on rollback. Not a CatalogChangedEvent:
+		// that reloads the whole catalog, once per line of every order
+		eventPublisher.publishEvent(new StockChangedEvent(productId, productRepository.findAmountById(productId)));
+		return true;
+	}
+}
@@ -0,0 +1,92 @@
+package poly.edu.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming CSV reader (RFC 4180: quoted fields, "" escapes, line
+ * breaks inside quotes). Reads one record at a time, so memory stays constant
+ * whatever the file size.
+ */
+public class CsvReader implements Closeable {
+
+	private final Reader reader;
+	private final char separator;
+	private int peeked = -2;
+
+	public CsvReader(Reader reader, char separator) {
+		this.reader = reader;
+		this.separator = separator;
+	}
+
+	/**
+	 * Read the next record
+	 * 
+	 * @return the fields, or null at the end of the input
+	 */
+	public List<String> next() throws IOException {
+		int c = read();
+		if (c == -1) {
+			return null;
+		}
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		while (true) {
+			if (quoted) {
+				if (c == -1) {
+					break; // unterminated quote: take what we have
+				}
+				if (c == '"') {
+					if (peek() == '"') {
+						read();
+						field.append('"');
+					} else {
+						quoted = false;
+					}
+				} else {
+					field.append((char) c);
+				}
+			} else if (c == '"' && field.isEmpty()) {
+				quoted = true;
+			} else if (c == separator) {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else if (c == '\r' || c == '\n' || c == -1) {
+				if (c == '\r' && peek() == '\n') {
+					read();
+				}
+				break;
+			} else {
+				field.append((char) c);
+			}
+			c = read();
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	private int read() throws IOException {
+		if (peeked != -2) {
+			int c = peeked;
+			peeked = -2;
+			return c;
+		}
+		return reader.read();
+	}
+
+	private int peek() throws IOException {
+		if (peeked == -2) {
+			peeked = reader.read();
+		}
+		return peeked;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
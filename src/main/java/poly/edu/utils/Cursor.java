@@ -0,0 +1,146 @@
+package poly.edu.utils;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Position in a keyset-paginated listing: the sort key values of the row the
+ * page starts after (or ends before), always including the id so every
+ * position is unique.
+ * 
+ * Cursors travel through URLs as opaque tokens, see {@link #encode()} and
+ * {@link #decode(String)}.
+ */
+public final class Cursor {
+
+	private static final Cursor INITIAL = new Cursor(false, Map.of());
+
+	private final boolean backward;
+	private final Map<String, Object> keys;
+
+	private Cursor(boolean backward, Map<String, Object> keys) {
+		this.backward = backward;
+		this.keys = Collections.unmodifiableMap(new LinkedHashMap<>(keys));
+	}
+
+	/**
+	 * Cursor for the first page
+	 */
+	public static Cursor initial() {
+		return INITIAL;
+	}
+
+	/**
+	 * Cursor for the page that follows the row with these keys
+	 */
+	public static Cursor after(Map<String, Object> keys) {
+		return new Cursor(false, keys);
+	}
+
+	/**
+	 * Cursor for the page that precedes the row with these keys
+	 */
+	public static Cursor before(Map<String, Object> keys) {
+		return new Cursor(true, keys);
+	}
+
+	public boolean isInitial() {
+		return keys.isEmpty();
+	}
+
+	public boolean isBackward() {
+		return backward && !isInitial();
+	}
+
+	public Map<String, Object> getKeys() {
+		return keys;
+	}
+
+	/**
+	 * Encode the cursor as a URL-safe token. Example: {id=42} scrolling forward
+	 * -> base64url("n&id=i42"); a null key is tagged 'z' with no value
+	 */
+	public String encode() {
+		StringBuilder sb = new StringBuilder(backward ? "p" : "n");
+		keys.forEach((name, value) -> {
+			sb.append('&').append(name).append('=').append(tagOf(value));
+			if (value != null) {
+				sb.append(URLEncoder.encode(String.valueOf(value), StandardCharsets.UTF_8));
+			}
+		});
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decode a token produced by {@link #encode()}
+	 * 
+	 * @param token the token from the request, may be null
+	 * @return the cursor, or the initial cursor when the token is missing or
+	 *         malformed
+	 */
+	public static Cursor decode(String token) {
+		if (token == null || token.isBlank()) {
+			return INITIAL;
+		}
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			String[] parts = raw.split("&");
+			if (!"n".equals(parts[0]) && !"p".equals(parts[0])) {
+				return INITIAL;
+			}
+			Map<String, Object> keys = new LinkedHashMap<>();
+			for (int i = 1; i < parts.length; i++) {
+				int eq = parts[i].indexOf('=');
+				String name = parts[i].substring(0, eq);
+				char tag = parts[i].charAt(eq + 1);
+				String value = URLDecoder.decode(parts[i].substring(eq + 2), StandardCharsets.UTF_8);
+				keys.put(name, parse(tag, value));
+			}
+			return new Cursor("p".equals(parts[0]), keys);
+		} catch (RuntimeException e) {
+			// Tampered or outdated token: start from the first page
+			return INITIAL;
+		}
+	}
+
+	private static char tagOf(Object value) {
+		if (value == null) {
+			return 'z';
+		}
+		if (value instanceof Integer) {
+			return 'i';
+		}
+		if (value instanceof Long) {
+			return 'l';
+		}
+		if (value instanceof Double) {
+			return 'd';
+		}
+		if (value instanceof Boolean) {
+			return 'b';
+		}
+		if (value instanceof LocalDate) {
+			return 't';
+		}
+		return 's';
+	}
+
+	private static Object parse(char tag, String value) {
+		return switch (tag) {
+			case 'i' -> Integer.valueOf(value);
+			case 'l' -> Long.valueOf(value);
+			case 'd' -> Double.valueOf(value);
+			case 'b' -> Boolean.valueOf(value);
+			case 't' -> LocalDate.parse(value);
+			case 's' -> value;
+			case 'z' -> null;
+			default -> throw new IllegalArgumentException("Unknown cursor key type: " + tag);
+		};
+	}
+}
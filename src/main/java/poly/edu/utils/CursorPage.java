@@ -0,0 +1,21 @@
+package poly.edu.utils;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing
+ * 
+ * @param content  the rows of this page
+ * @param next     token of the next page, or null on the last page
+ * @param previous token of the previous page, or null on the first page
+ */
+public record CursorPage<T>(List<T> content, String next, String previous) {
+
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	public boolean hasPrevious() {
+		return previous != null;
+	}
+}
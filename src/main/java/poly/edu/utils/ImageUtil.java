@@ -1,10 +1,22 @@
 package poly.edu.utils;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 import org.springframework.web.multipart.MultipartFile;
 
@@ -13,6 +25,38 @@ public class ImageUtil {
 	// Upload directory outside classpath
 	private static final String UPLOAD_DIR = "uploads/products";
 
+	// Hash bytes kept in file names (128 bits)
+	private static final int HASH_BYTES = 16;
+
+	// Told the name of every image written or removed here, e.g. to drop it from a cache
+	private static final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+	public static void addListener(Consumer<String> listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Notify the listeners that an image in the upload directory was written,
+	 * replaced or removed outside of {@link #save} and {@link #delete}
+	 * 
+	 * @param fileName "products/123456.jpg" or a direct filename (old format)
+	 */
+	public static void changed(String fileName) {
+		String name = fileName.startsWith("products/") ? fileName : "products/" + fileName;
+		for (Consumer<String> listener : listeners) {
+			listener.accept(name);
+		}
+	}
+
+	/**
+	 * Store an upload under a name derived from its content:
+	 * products/ab/cd/abcd1234....jpg, with the first two bytes of the SHA-256 hash
+	 * as shard directories. Uploading the same photo twice stores it once, two
+	 * different uploads can never overwrite each other, and a name always denotes
+	 * the same bytes so it can be cached forever.
+	 * 
+	 * @return the image name, e.g. "products/ab/cd/abcd1234....jpg"
+	 */
 	public static String save(MultipartFile imageFile) throws IOException {
 
 		if (imageFile == null || imageFile.isEmpty()) {
@@ -20,25 +64,58 @@ public class ImageUtil {
 		}
 
 		// Create upload directory if it doesn't exist
-		Path uploadPath = Paths.get(UPLOAD_DIR).toAbsolutePath().normalize();
+		Path uploadPath = uploadDir();
 		Files.createDirectories(uploadPath);
 
-		// Generate unique filename with timestamp
-		String originalFilename = imageFile.getOriginalFilename();
-		String fileExtension = "";
-		if (originalFilename != null && originalFilename.contains(".")) {
-			fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
+		// Hash while copying to a temp file, the name is only known at the end
+		MessageDigest sha256;
+		try {
+			sha256 = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		Path temp = Files.createTempFile(uploadPath, "upload-", ".tmp");
+		try {
+			try (InputStream in = new DigestInputStream(imageFile.getInputStream(), sha256)) {
+				Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+			}
+			String hash = HexFormat.of().formatHex(sha256.digest(), 0, HASH_BYTES);
+			String fileName = hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash
+					+ extension(imageFile.getOriginalFilename());
+
+			Path filePath = uploadPath.resolve(fileName);
+			if (Files.exists(filePath)) {
+				// Touch it: the orphan sweeper must not quarantine a file that is about to be referenced again
+				Files.setLastModifiedTime(filePath, FileTime.from(Instant.now()));
+				System.out.println("Image already stored: " + filePath.toString());
+			} else {
+				Files.createDirectories(filePath.getParent());
+				// Same name means same bytes: a concurrent identical upload may win the race harmlessly
+				Files.move(temp, filePath, StandardCopyOption.ATOMIC_MOVE);
+				System.out.println("Image saved successfully to: " + filePath.toString());
+			}
+			changed(fileName);
+
+			// Return path relative to /images/ URL (e.g., "products/ab/cd/abcd1234....jpg")
+			return "products/" + fileName;
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Normalized file extension of an upload: ".jpg", ".png"... or "" when
+	 * missing or unusual
+	 */
+	private static String extension(String originalFilename) {
+		if (originalFilename == null || !originalFilename.contains(".")) {
+			return "";
+		}
+		String ext = originalFilename.substring(originalFilename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+		if (ext.equals("jpeg")) {
+			ext = "jpg";
 		}
-		String fileName = System.currentTimeMillis() + fileExtension;
-		
-		// Save file to upload directory
-		Path filePath = uploadPath.resolve(fileName);
-		Files.copy(imageFile.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
-		
-		System.out.println("Image saved successfully to: " + filePath.toString());
-
-		// Return path relative to /uploads/ URL (e.g., "products/123456.jpg")
-		return "products/" + fileName;
+		return ext.matches("[a-z0-9]{1,5}") ? "." + ext : "";
 	}
 
 	public static boolean delete(String fileName) {
@@ -48,17 +125,7 @@ public class ImageUtil {
 		}
 
 		try {
-			Path uploadPath = Paths.get(UPLOAD_DIR).toAbsolutePath().normalize();
-			Path filePath;
-
-			if (fileName.startsWith("products/")) {
-				// New format: "products/123456.jpg"
-				String actualFileName = fileName.substring("products/".length());
-				filePath = uploadPath.resolve(actualFileName);
-			} else {
-				// Old format or direct filename
-				filePath = uploadPath.resolve(fileName);
-			}
+			Path filePath = resolve(fileName);
 
 			System.out.println("Attempting to delete image: " + filePath.toString());
 			
@@ -69,6 +136,8 @@ public class ImageUtil {
 			} else {
 				System.out.println("Image file not found: " + filePath.toString());
 			}
+			changed(fileName);
+			deleteVariants(fileName);
 			return deleted;
 
 		} catch (IOException e) {
@@ -77,4 +146,52 @@ public class ImageUtil {
 			return false;
 		}
 	}
+
+	/**
+	 * The upload directory, absolute
+	 */
+	public static Path uploadDir() {
+		return Paths.get(UPLOAD_DIR).toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Locate an image in the upload directory
+	 * 
+	 * @param fileName "products/123456.jpg" (new format) or a direct filename (old
+	 *                 format)
+	 * @return the file, which may not exist
+	 */
+	public static Path resolve(String fileName) {
+		Path uploadPath = uploadDir();
+		String name = fileName.startsWith("products/") ? fileName.substring("products/".length()) : fileName;
+		Path filePath = uploadPath.resolve(name).normalize();
+		if (!filePath.startsWith(uploadPath)) {
+			throw new IllegalArgumentException("Invalid image name: " + fileName);
+		}
+		return filePath;
+	}
+
+	/**
+	 * Name of a resized variant of an image, stored next to it in the upload
+	 * directory. Example: ("products/123456.png", "card") -> "products/123456-card.jpg"
+	 */
+	public static String variant(String fileName, String suffix) {
+		int dot = fileName.lastIndexOf('.');
+		String base = dot > fileName.lastIndexOf('/') ? fileName.substring(0, dot) : fileName;
+		return base + "-" + suffix + ".jpg";
+	}
+
+	private static void deleteVariants(String fileName) throws IOException {
+		Path original = resolve(fileName);
+		if (!Files.isDirectory(original.getParent())) {
+			return;
+		}
+		String pattern = resolve(variant(fileName, "*")).getFileName().toString();
+		try (DirectoryStream<Path> variants = Files.newDirectoryStream(original.getParent(), pattern)) {
+			for (Path path : variants) {
+				Files.deleteIfExists(path);
+				changed(uploadDir().relativize(path).toString().replace('\\', '/'));
+			}
+		}
+	}
 }
@@ -0,0 +1,61 @@
+package poly.edu.utils;
+
+import java.util.function.Supplier;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.thymeleaf.context.LazyContextVariable;
+
+public class LazyModel {
+
+	private static final String MEMO_PREFIX = LazyModel.class.getName() + ".";
+
+	/**
+	 * Wrap a loader as a lazy model attribute. Thymeleaf only calls the loader when
+	 * the template actually reads the variable, and at most once per render.
+	 * 
+	 * @param loader the data loader, e.g. categoryServices::findAll
+	 * @return a lazy variable to put in the model
+	 */
+	public static <T> LazyContextVariable<T> of(Supplier<T> loader) {
+		return new LazyContextVariable<T>() {
+			@Override
+			protected T loadValue() {
+				return loader.get();
+			}
+		};
+	}
+
+	/**
+	 * Same as {@link #of(Supplier)}, but the loaded value is also memoized in the
+	 * current request under the given key, so several attributes (or controller
+	 * code and the template) asking for the same data share one load.
+	 * 
+	 * @param key    request-scoped memo key, e.g. "categories"
+	 * @param loader the data loader
+	 */
+	public static <T> LazyContextVariable<T> memo(String key, Supplier<T> loader) {
+		return of(() -> request(key, loader));
+	}
+
+	/**
+	 * Load a value once per request
+	 * 
+	 * @param key    request-scoped memo key
+	 * @param loader the data loader, called only on the first lookup of the key
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T request(String key, Supplier<T> loader) {
+		RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+		if (attributes == null) {
+			return loader.get();
+		}
+		String name = MEMO_PREFIX + key;
+		Object value = attributes.getAttribute(name, RequestAttributes.SCOPE_REQUEST);
+		if (value == null) {
+			value = loader.get();
+			attributes.setAttribute(name, value, RequestAttributes.SCOPE_REQUEST);
+		}
+		return (T) value;
+	}
+}
@@ -0,0 +1,50 @@
+package poly.edu.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public class TextUtil {
+
+	private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+	private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+
+	/**
+	 * Fold a text for search: lower case, Vietnamese diacritics removed and
+	 * punctuation collapsed to single spaces. Example: "Hoa Cưới Đỏ!" -> "hoa cuoi
+	 * do"
+	 * 
+	 * @param text the text to fold
+	 * @return folded text, empty string when text is null
+	 */
+	public static String fold(String text) {
+		if (text == null || text.isEmpty()) {
+			return "";
+		}
+		// đ/Đ is a separate letter, not a d + combining mark, so NFD leaves it alone
+		String replaced = text.replace('đ', 'd').replace('Đ', 'D');
+		String decomposed = Normalizer.normalize(replaced, Normalizer.Form.NFD);
+		String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("");
+		return NON_ALPHANUMERIC.matcher(stripped.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+	}
+
+	/**
+	 * Fold a text and split it into search terms
+	 */
+	public static List<String> tokenize(String text) {
+		String folded = fold(text);
+		List<String> tokens = new ArrayList<>();
+		if (folded.isEmpty()) {
+			return tokens;
+		}
+		for (String token : folded.split(" ")) {
+			if (!token.isEmpty()) {
+				tokens.add(token);
+			}
+		}
+		return tokens;
+	}
+}
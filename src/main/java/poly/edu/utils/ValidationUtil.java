@@ -0,0 +1,43 @@
+package poly.edu.utils;
+
+import poly.edu.models.entities.Product;
+
+public class ValidationUtil {
+
+	/** Width of Products.Name */
+	public static final int PRODUCT_NAME_MAX_LENGTH = 50;
+
+	/** Width of Products.Image */
+	public static final int PRODUCT_IMAGE_MAX_LENGTH = 100;
+
+	/**
+	 * Business rules a product must pass before it is saved, shared by the product
+	 * form and the bulk import. The image is checked by the callers, since a form
+	 * edit may keep the existing one.
+	 * 
+	 * @param product the product to check
+	 * @return the first error message, or null when the product is valid
+	 */
+	public static String validateProduct(Product product) {
+		if (product.getName() == null || product.getName().isBlank()) {
+			return "Product name is required";
+		}
+		if (product.getName().length() > PRODUCT_NAME_MAX_LENGTH) {
+			return "Product name must be at most " + PRODUCT_NAME_MAX_LENGTH + " characters";
+		}
+		if (product.getImage() != null && product.getImage().length() > PRODUCT_IMAGE_MAX_LENGTH) {
+			return "Product image path must be at most " + PRODUCT_IMAGE_MAX_LENGTH + " characters";
+		}
+		if (product.getPrice() == null || product.getPrice() <= 0) {
+			return "Product price must be greater than 0";
+		}
+		if (product.getAmount() == null || product.getAmount() <= 0) {
+			return "Product amount must be greater than 0";
+		}
+		if (product.getCategory() == null || product.getCategory().getId() == null
+				|| product.getCategory().getId().isBlank()) {
+			return "Please select a category";
+		}
+		return null;
+	}
+}
@@ -10,6 +10,9 @@ document.addEventListener('DOMContentLoaded', function() {
     
     // Sidebar toggle functionality for admin dashboard
     initSidebarToggle();
+    
+    // Autocomplete for product search boxes
+    initSearchSuggest();
 });
 
 /**
@@ -134,3 +137,44 @@ function initSidebarToggle() {
     console.log('Sidebar toggle initialized successfully');
 }
 
+/**
+ * Initialize autocomplete on search inputs marked with data-suggest.
+ * Suggestions come from /api/products/suggest and are shown in a datalist.
+ */
+function initSearchSuggest() {
+    const inputs = document.querySelectorAll('input[data-suggest]');
+    inputs.forEach(input => {
+        const datalist = document.getElementById(input.getAttribute('list'));
+        if (!datalist) {
+            return;
+        }
+        
+        let timer = null;
+        let lastQuery = '';
+        input.addEventListener('input', function() {
+            clearTimeout(timer);
+            timer = setTimeout(() => {
+                const query = input.value.trim();
+                if (query === lastQuery) {
+                    return;
+                }
+                lastQuery = query;
+                if (query.length === 0) {
+                    datalist.innerHTML = '';
+                    return;
+                }
+                fetch(input.dataset.suggest + '?q=' + encodeURIComponent(query))
+                    .then(response => response.ok ? response.json() : [])
+                    .then(suggestions => {
+                        datalist.innerHTML = '';
+                        suggestions.forEach(s => {
+                            const option = document.createElement('option');
+                            option.value = s.label;
+                            datalist.appendChild(option);
+                        });
+                    })
+                    .catch(() => { datalist.innerHTML = ''; });
+            }, 100);
+        });
+    });
+}
@@ -0,0 +1,82 @@
+package poly.edu;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import poly.edu.utils.CsvReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * RFC 4180 records as spreadsheets export them
+ */
+@DisplayName("CSV Reader Tests")
+public class CsvReaderTests {
+
+	@Test
+	@DisplayName("Plain fields, with or without a final line break")
+	public void testPlainRecords() throws IOException {
+		assertThat(read("name,price\nHoa Hồng,150000\n", ',')).containsExactly(
+				List.of("name", "price"), List.of("Hoa Hồng", "150000"));
+		assertThat(read("name,price\nHoa Hồng,150000", ',')).containsExactly(
+				List.of("name", "price"), List.of("Hoa Hồng", "150000"));
+		assertThat(read("", ',')).isEmpty();
+	}
+
+	@Test
+	@DisplayName("CRLF, LF and CR all end a record")
+	public void testLineEndings() throws IOException {
+		assertThat(read("a,b\r\nc,d\re,f\ng,h\r\n", ',')).containsExactly(
+				List.of("a", "b"), List.of("c", "d"), List.of("e", "f"), List.of("g", "h"));
+	}
+
+	@Test
+	@DisplayName("Quoted fields keep separators, doubled quotes and line breaks")
+	public void testQuotedFields() throws IOException {
+		assertThat(read("\"Hoa, Cúc\",\"Bó \"\"đẹp\"\"\",\"dòng 1\r\ndòng 2\"\nx,y,z\n", ',')).containsExactly(
+				List.of("Hoa, Cúc", "Bó \"đẹp\"", "dòng 1\r\ndòng 2"), List.of("x", "y", "z"));
+		assertThat(read("\"\",\"\"\"\"\n", ',')).containsExactly(List.of("", "\""));
+	}
+
+	@Test
+	@DisplayName("A quote inside an unquoted field is kept as text")
+	public void testQuoteInsideField() throws IOException {
+		assertThat(read("Hoa 5\" cao,1\n", ',')).containsExactly(List.of("Hoa 5\" cao", "1"));
+	}
+
+	@Test
+	@DisplayName("Empty fields and empty lines are kept, so columns stay aligned")
+	public void testEmptyFields() throws IOException {
+		assertThat(read("a,,c,\n\n,\n", ',')).containsExactly(
+				List.of("a", "", "c", ""), List.of(""), List.of("", ""));
+	}
+
+	@Test
+	@DisplayName("An unterminated quote takes the rest of the input")
+	public void testUnterminatedQuote() throws IOException {
+		assertThat(read("a,\"b\nc,d", ',')).containsExactly(List.of("a", "b\nc,d"));
+	}
+
+	@Test
+	@DisplayName("Semicolon separated files, as Excel saves them in Vietnamese locales")
+	public void testSemicolonSeparator() throws IOException {
+		assertThat(read("Hoa Hồng;150.000,5;\"a;b\"\n", ';')).containsExactly(
+				List.of("Hoa Hồng", "150.000,5", "a;b"));
+	}
+
+	private static List<List<String>> read(String text, char separator) throws IOException {
+		List<List<String>> records = new ArrayList<>();
+		try (CsvReader reader = new CsvReader(new StringReader(text), separator)) {
+			List<String> record;
+			while ((record = reader.next()) != null) {
+				records.add(record);
+			}
+		}
+		return records;
+	}
+}
@@ -0,0 +1,161 @@
+package poly.edu;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import poly.edu.utils.ImageUtil;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Uploads stored under the hash of their content. Writes to the real upload
+ * directory, and removes what it wrote.
+ */
+@DisplayName("Image Util Tests")
+public class ImageUtilTests {
+
+	private final List<String> saved = new ArrayList<>();
+
+	private final List<String> notified = new ArrayList<>();
+
+	// Unique per test, so the names never collide with real uploads
+	private byte[] content;
+
+	@BeforeEach
+	public void setup() {
+		content = ("test image " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+		ImageUtil.addListener(name -> {
+			synchronized (notified) {
+				notified.add(name);
+			}
+		});
+	}
+
+	@AfterEach
+	public void cleanup() throws IOException {
+		for (String name : saved) {
+			ImageUtil.delete(name);
+			// Shard directories created for the test
+			Path dir = ImageUtil.resolve(name).getParent();
+			while (!dir.equals(ImageUtil.uploadDir()) && isEmptyDirectory(dir)) {
+				Files.delete(dir);
+				dir = dir.getParent();
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("An upload is named after the SHA-256 of its bytes, sharded by its first two bytes")
+	public void testContentAddressedName() throws Exception {
+		String name = save("Hoa Hồng.JPEG", content);
+
+		String hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content), 0, 16);
+		assertThat(name)
+				.isEqualTo("products/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash + ".jpg");
+		assertThat(Files.readAllBytes(ImageUtil.resolve(name))).isEqualTo(content);
+		assertThat(notified).contains(name);
+	}
+
+	@Test
+	@DisplayName("Extensions are normalized, odd ones dropped")
+	public void testExtensions() throws Exception {
+		assertThat(save("photo.PNG", content)).endsWith(".png");
+		assertThat(save("photo", bytes("no extension"))).doesNotContain(".");
+		assertThat(save("photo.tar.gz!", bytes("odd extension"))).doesNotContain(".");
+		assertThat(save("photo.webp", bytes("webp"))).endsWith(".webp");
+	}
+
+	@Test
+	@DisplayName("The same bytes uploaded twice are stored once, and marked as used again")
+	public void testDedupe() throws Exception {
+		String first = save("a.jpg", content);
+		Path file = ImageUtil.resolve(first);
+		FileTime old = FileTime.from(Instant.now().minus(30, ChronoUnit.DAYS));
+		Files.setLastModifiedTime(file, old);
+
+		String second = save("b.jpeg", content);
+
+		assertThat(second).isEqualTo(first);
+		assertThat(Files.getLastModifiedTime(file)).isGreaterThan(old);
+		try (var files = Files.list(file.getParent())) {
+			assertThat(files.filter(p -> p.getFileName().toString().startsWith(file.getFileName().toString()
+					.replace(".jpg", "")))).hasSize(1);
+		}
+		assertThat(save("a.jpg", bytes("other bytes"))).isNotEqualTo(first);
+	}
+
+	@Test
+	@DisplayName("Empty uploads are not stored")
+	public void testEmptyUpload() throws Exception {
+		assertThat(ImageUtil.save(null)).isNull();
+		assertThat(ImageUtil.save(new MockMultipartFile("image", "a.jpg", "image/jpeg", new byte[0]))).isNull();
+	}
+
+	@Test
+	@DisplayName("Variants sit next to the original, as JPEG")
+	public void testVariantNames() {
+		assertThat(ImageUtil.variant("products/ab/cd/abcd.png", "card")).isEqualTo("products/ab/cd/abcd-card.jpg");
+		assertThat(ImageUtil.variant("products/noext", "card")).isEqualTo("products/noext-card.jpg");
+		assertThat(ImageUtil.variant("products/a.b/photo", "zoom")).isEqualTo("products/a.b/photo-zoom.jpg");
+	}
+
+	@Test
+	@DisplayName("Deleting an image deletes its variants")
+	public void testDeleteVariants() throws Exception {
+		String name = save("a.png", content);
+		Path variant = ImageUtil.resolve(ImageUtil.variant(name, "card"));
+		Files.write(variant, bytes("variant"));
+
+		assertThat(ImageUtil.delete(name)).isTrue();
+
+		assertThat(ImageUtil.resolve(name)).doesNotExist();
+		assertThat(variant).doesNotExist();
+		assertThat(notified).contains(name, ImageUtil.variant(name, "card"));
+	}
+
+	@Test
+	@DisplayName("Names cannot leave the upload directory")
+	public void testPathTraversal() {
+		assertThatThrownBy(() -> ImageUtil.resolve("products/../../pom.xml"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(ImageUtil.resolve("products/ab/cd/abcd.jpg"))
+				.isEqualTo(ImageUtil.uploadDir().resolve("ab/cd/abcd.jpg"));
+		assertThat(ImageUtil.resolve("legacy.jpg")).isEqualTo(ImageUtil.uploadDir().resolve("legacy.jpg"));
+	}
+
+	private String save(String originalName, byte[] bytes) throws IOException {
+		String name = ImageUtil.save(new MockMultipartFile("image", originalName, "image/jpeg", bytes));
+		saved.add(name);
+		return name;
+	}
+
+	private byte[] bytes(String text) {
+		return (text + " " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static boolean isEmptyDirectory(Path dir) throws IOException {
+		if (!Files.isDirectory(dir)) {
+			return false;
+		}
+		try (var entries = Files.list(dir)) {
+			return entries.findAny().isEmpty();
+		}
+	}
+}
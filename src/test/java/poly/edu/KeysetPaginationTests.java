@@ -0,0 +1,342 @@
+package poly.edu;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.repository.query.FluentQuery.FetchableFluentQuery;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import poly.edu.models.repositories.KeysetSpecifications;
+import poly.edu.utils.Cursor;
+import poly.edu.utils.CursorPage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cursor tokens and keyset paging. The seek predicates are evaluated in memory
+ * with SQL Server's rules (NULL below every value, comparisons with NULL never
+ * true), so no database is needed.
+ */
+@DisplayName("Keyset Pagination Tests")
+public class KeysetPaginationTests {
+
+	public static class Row {
+
+		private final Integer id;
+		private final Double price;
+		private final String name;
+
+		Row(Integer id, Double price, String name) {
+			this.id = id;
+			this.price = price;
+			this.name = name;
+		}
+
+		public Integer getId() {
+			return id;
+		}
+
+		public Double getPrice() {
+			return price;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	// Ties on price and name, and NULLs in both
+	private static final List<Row> ROWS = List.of(
+			new Row(1, 150000.0, "Hoa Hồng"), new Row(2, 150000.0, "Hoa Cúc"), new Row(3, null, "Hoa Lan"),
+			new Row(4, 90000.0, null), new Row(5, 150000.0, "Hoa Hồng"), new Row(6, null, null),
+			new Row(7, 200000.0, "Hoa Ly"), new Row(8, 90000.0, "Hoa Cúc"), new Row(9, 150000.0, null),
+			new Row(10, null, "Hoa Lan"), new Row(11, 200000.0, "Hoa Ly"), new Row(12, 90000.0, "Hoa Sen"),
+			new Row(13, 150000.0, "Hoa Cúc"));
+
+	@Test
+	@DisplayName("A cursor survives encoding with every key type")
+	public void testCursorRoundTrip() {
+		Map<String, Object> keys = new LinkedHashMap<>();
+		keys.put("name", "Hoa Hồng & Cúc = 100%");
+		keys.put("price", 150000.0);
+		keys.put("createDate", LocalDate.of(2024, 2, 29));
+		keys.put("available", true);
+		keys.put("orderId", 12345678901L);
+		keys.put("id", 42);
+
+		Cursor after = Cursor.decode(Cursor.after(keys).encode());
+		assertThat(after.isBackward()).isFalse();
+		assertThat(after.getKeys()).containsExactlyEntriesOf(keys);
+
+		Cursor before = Cursor.decode(Cursor.before(keys).encode());
+		assertThat(before.isBackward()).isTrue();
+		assertThat(before.getKeys()).containsExactlyEntriesOf(keys);
+	}
+
+	@Test
+	@DisplayName("A null key stays null, not the text \"null\"")
+	public void testCursorNullKey() {
+		Map<String, Object> keys = new LinkedHashMap<>();
+		keys.put("name", null);
+		keys.put("id", 6);
+
+		Cursor cursor = Cursor.decode(Cursor.after(keys).encode());
+
+		assertThat(cursor.getKeys()).containsEntry("name", null).containsEntry("id", 6);
+
+		keys.put("name", "null");
+		assertThat(Cursor.decode(Cursor.after(keys).encode()).getKeys()).containsEntry("name", "null");
+	}
+
+	@Test
+	@DisplayName("Missing and tampered tokens start from the first page")
+	public void testCursorTamperedTokens() {
+		assertThat(Cursor.decode(null).isInitial()).isTrue();
+		assertThat(Cursor.decode("").isInitial()).isTrue();
+		assertThat(Cursor.decode("not base64!").isInitial()).isTrue();
+		assertThat(Cursor.decode(token("x&id=i1")).isInitial()).isTrue();
+		assertThat(Cursor.decode(token("n&id=i12a")).isInitial()).isTrue();
+		assertThat(Cursor.decode(token("n&id=q1")).isInitial()).isTrue();
+		assertThat(Cursor.decode(token("n&id")).isInitial()).isTrue();
+		assertThat(Cursor.decode(token("n&id=")).isInitial()).isTrue();
+		assertThat(Cursor.decode(token("n&id=t2024-13-01")).isInitial()).isTrue();
+
+		assertThat(Cursor.decode(token("p&id=i7")).getKeys()).containsEntry("id", 7);
+	}
+
+	@Test
+	@DisplayName("A cursor is only used with the sort it was made for")
+	public void testValidateAgainstSort() {
+		Sort sort = Sort.by(Sort.Order.asc("price"), Sort.Order.asc("id"));
+
+		Cursor valid = Cursor.after(keys("price", 150000.0, "id", 5));
+		assertThat(KeysetSpecifications.validate(Row.class, sort, valid)).isSameAs(valid);
+
+		Cursor nullPrice = Cursor.after(keys("price", null, "id", 3));
+		assertThat(KeysetSpecifications.validate(Row.class, sort, nullPrice)).isSameAs(nullPrice);
+
+		assertThat(KeysetSpecifications.validate(Row.class, sort, Cursor.after(keys("id", 5, "price", 150000.0)))
+				.isInitial()).isTrue();
+		assertThat(KeysetSpecifications.validate(Row.class, sort, Cursor.after(keys("price", "cheap", "id", 5)))
+				.isInitial()).isTrue();
+		assertThat(KeysetSpecifications.validate(Row.class, sort, Cursor.after(keys("id", 5))).isInitial())
+				.isTrue();
+		assertThat(KeysetSpecifications.validate(Row.class, Sort.by("color", "id"),
+				Cursor.after(keys("color", "red", "id", 5))).isInitial()).isTrue();
+	}
+
+	@Test
+	@DisplayName("Paging visits every row once across ties and NULL keys, in both directions")
+	public void testScrollOverTies() {
+		List<Sort> sorts = List.of(
+				Sort.by(Sort.Order.asc("price"), Sort.Order.asc("id")),
+				Sort.by(Sort.Order.desc("price"), Sort.Order.desc("id")),
+				Sort.by(Sort.Order.desc("price"), Sort.Order.asc("name"), Sort.Order.desc("id")),
+				Sort.by(Sort.Order.asc("name"), Sort.Order.desc("price"), Sort.Order.asc("id")));
+		for (Sort sort : sorts) {
+			for (int size : new int[] { 1, 2, 3, 5, 13, 20 }) {
+				assertPagesInOrder(sort, size);
+			}
+		}
+	}
+
+	private static void assertPagesInOrder(Sort sort, int size) {
+		List<Integer> expected = ROWS.stream().sorted(comparator(sort)).map(Row::getId).toList();
+
+		// Forward, through the encoded tokens as a browser would
+		List<List<Integer>> pages = new ArrayList<>();
+		List<String> previous = new ArrayList<>();
+		String token = null;
+		do {
+			CursorPage<Row> page = KeysetSpecifications.scroll(repository(), Row.class, null, sort,
+					Cursor.decode(token), size);
+			pages.add(ids(page.content()));
+			previous.add(page.previous());
+			token = page.next();
+		} while (token != null);
+
+		assertThat(pages.stream().flatMap(List::stream).toList()).as("%s, size %d", sort, size)
+				.isEqualTo(expected);
+		assertThat(previous.get(0)).isNull();
+
+		// Back from the last page to the first
+		for (int i = pages.size() - 1; i > 0; i--) {
+			CursorPage<Row> page = KeysetSpecifications.scroll(repository(), Row.class, null, sort,
+					Cursor.decode(previous.get(i)), size);
+			assertThat(ids(page.content())).as("%s, size %d, page %d", sort, size, i - 1)
+					.isEqualTo(pages.get(i - 1));
+			assertThat(page.next()).isNotNull();
+		}
+	}
+
+	private static List<Integer> ids(List<Row> rows) {
+		return rows.stream().map(Row::getId).toList();
+	}
+
+	private static String token(String raw) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Map<String, Object> keys(Object... namesAndValues) {
+		Map<String, Object> keys = new LinkedHashMap<>();
+		for (int i = 0; i < namesAndValues.length; i += 2) {
+			keys.put((String) namesAndValues[i], namesAndValues[i + 1]);
+		}
+		return keys;
+	}
+
+	private static Object value(Object row, String property) {
+		return new BeanWrapperImpl(row).getPropertyValue(property);
+	}
+
+	// SQL Server order: NULL first ascending, last descending
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Comparator<Row> comparator(Sort sort) {
+		Comparator<Row> result = (a, b) -> 0;
+		for (Sort.Order order : sort) {
+			Comparator<Row> key = Comparator.comparing(row -> (Comparable) value(row, order.getProperty()),
+					Comparator.nullsFirst(Comparator.naturalOrder()));
+			result = result.thenComparing(order.isAscending() ? key : key.reversed());
+		}
+		return result;
+	}
+
+	/**
+	 * Repository over {@link #ROWS}: filters with the specification, sorts and
+	 * limits as the fluent query asks
+	 */
+	@SuppressWarnings("unchecked")
+	private static JpaSpecificationExecutor<Row> repository() {
+		return proxy(JpaSpecificationExecutor.class, (self, method, args) -> {
+			if (!method.getName().equals("findBy")) {
+				throw new UnsupportedOperationException(method.getName());
+			}
+			Specification<Row> spec = (Specification<Row>) args[0];
+			Predicate predicate = spec.toPredicate(proxy(Root.class, (r, m, a) -> path((String) a[0])), null,
+					criteriaBuilder());
+			List<Row> matching = ROWS.stream().filter(row -> predicate == null || test(predicate, row)).toList();
+			return ((Function<FetchableFluentQuery<Row>, ?>) args[1]).apply(fluent(matching, null, -1));
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	private static FetchableFluentQuery<Row> fluent(List<Row> rows, Sort sort, int limit) {
+		return proxy(FetchableFluentQuery.class, (self, method, args) -> switch (method.getName()) {
+			case "sortBy" -> fluent(rows, (Sort) args[0], limit);
+			case "limit" -> fluent(rows, sort, (Integer) args[0]);
+			case "all" -> rows.stream().sorted(comparator(sort)).limit(limit < 0 ? Long.MAX_VALUE : limit).toList();
+			default -> throw new UnsupportedOperationException(method.getName());
+		});
+	}
+
+	/** A proxy and what it stands for: a property name, a row test */
+	private record Handler(Class<?> type, Object target, InvocationHandler delegate) implements InvocationHandler {
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			if (method.getDeclaringClass() == Object.class) {
+				return switch (method.getName()) {
+					case "equals" -> proxy == args[0];
+					case "hashCode" -> System.identityHashCode(proxy);
+					default -> type.getSimpleName();
+				};
+			}
+			if (delegate == null) {
+				throw new UnsupportedOperationException(method.getName());
+			}
+			return delegate.invoke(proxy, method, args);
+		}
+	}
+
+	private static Path<?> path(String name) {
+		return proxy(Path.class, name, null);
+	}
+
+	private static Predicate predicate(java.util.function.Predicate<Object> test) {
+		return proxy(Predicate.class, test, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static boolean test(Predicate predicate, Object row) {
+		return ((java.util.function.Predicate<Object>) target(predicate)).test(row);
+	}
+
+	private static String property(Object path) {
+		return (String) target(path);
+	}
+
+	private static Object target(Object proxy) {
+		return ((Handler) Proxy.getInvocationHandler(proxy)).target();
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static int compare(Object row, Object path, Object value) {
+		return ((Comparable) value(row, property(path))).compareTo(value);
+	}
+
+	/** The CriteriaBuilder methods seek() uses; a comparison with NULL is never true */
+	private static CriteriaBuilder criteriaBuilder() {
+		return proxy(CriteriaBuilder.class, (self, method, args) -> switch (method.getName()) {
+			case "isNull" -> predicate(row -> value(row, property(args[0])) == null);
+			case "isNotNull" -> predicate(row -> value(row, property(args[0])) != null);
+			case "equal" -> predicate(row -> value(row, property(args[0])) != null && compare(row, args[0], args[1]) == 0);
+			case "greaterThan" -> predicate(row -> value(row, property(args[0])) != null && compare(row, args[0], args[1]) > 0);
+			case "lessThan" -> predicate(row -> value(row, property(args[0])) != null && compare(row, args[0], args[1]) < 0);
+			case "disjunction" -> predicate(row -> false);
+			case "conjunction" -> predicate(row -> true);
+			case "and" -> {
+				List<Predicate> all = predicates(args);
+				yield predicate(row -> all.stream().allMatch(p -> test(p, row)));
+			}
+			case "or" -> {
+				List<Predicate> any = predicates(args);
+				yield predicate(row -> any.stream().anyMatch(p -> test(p, row)));
+			}
+			default -> throw new UnsupportedOperationException(method.getName());
+		});
+	}
+
+	// and(Predicate...) or and(Expression, Expression)
+	private static List<Predicate> predicates(Object[] args) {
+		List<Predicate> predicates = new ArrayList<>();
+		for (Object arg : args) {
+			if (arg instanceof Object[] array) {
+				for (Object p : array) {
+					predicates.add((Predicate) p);
+				}
+			} else {
+				predicates.add((Predicate) arg);
+			}
+		}
+		return predicates;
+	}
+
+	private static <T> T proxy(Class<?> type, InvocationHandler handler) {
+		return proxy(type, null, handler);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<?> type, Object target, InvocationHandler handler) {
+		return (T) Proxy.newProxyInstance(KeysetPaginationTests.class.getClassLoader(), new Class<?>[] { type },
+				new Handler(type, target, handler));
+	}
+}
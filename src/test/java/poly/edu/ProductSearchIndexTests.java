@@ -0,0 +1,124 @@
+package poly.edu;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import poly.edu.models.entities.Category;
+import poly.edu.models.entities.Product;
+import poly.edu.models.repositories.ProductRepository;
+import poly.edu.models.services.ProductSearchIndex;
+import poly.edu.utils.TextUtil;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Diacritic-insensitive, typo-tolerant product search over an in-memory catalog
+ */
+@DisplayName("Product Search Index Tests")
+public class ProductSearchIndexTests {
+
+	private ProductSearchIndex index;
+
+	@BeforeEach
+	public void setup() {
+		Category wedding = category("HC", "Hoa Cưới");
+		Category orchids = category("HL", "Hoa Lan");
+		ProductRepository repository = mock(ProductRepository.class);
+		when(repository.findAll()).thenReturn(List.of(
+				product(1, "Hoa Hồng Đỏ", wedding),
+				product(2, "Bó Hồng Trắng", wedding),
+				product(3, "Hoa Đào Tết", null),
+				product(4, "Chậu Cây Để Bàn", orchids),
+				product(5, "Lan Hồ Điệp", null),
+				product(6, "Hướng Dương", null),
+				product(7, "Hoa Hồng Môn", null)));
+		index = new ProductSearchIndex();
+		ReflectionTestUtils.setField(index, "productRepository", repository);
+	}
+
+	@Test
+	@DisplayName("Folding strips case, Vietnamese marks and punctuation")
+	public void testFold() {
+		assertThat(TextUtil.fold("Hoa Cưới Đỏ!")).isEqualTo("hoa cuoi do");
+		assertThat(TextUtil.fold("  HƯỚNG--dương  ")).isEqualTo("huong duong");
+		assertThat(TextUtil.tokenize("Bó   hồng, trắng")).containsExactly("bo", "hong", "trang");
+		assertThat(TextUtil.fold(null)).isEmpty();
+	}
+
+	@Test
+	@DisplayName("Queries typed without diacritics find accented names")
+	public void testDiacriticInsensitive() {
+		// "hong" is within the edit distance of both words, far behind the exact match
+		assertThat(index.search("huong duong").keySet()).first().isEqualTo(6);
+		assertThat(index.search("dao").keySet()).first().isEqualTo(3);
+		assertThat(index.search("HỒNG trang")).containsOnlyKeys(2);
+		// 1 is named "Hoa...", 2 only sits in the "Hoa Cưới" category
+		assertThat(index.search("hoa cuoi").keySet()).containsExactly(1, 2);
+	}
+
+	@Test
+	@DisplayName("Every term must match, as a word or a word prefix")
+	public void testTermsAndPrefixes() {
+		// "hồng" as a prefix first, then words one edit away ("hồ", "hoa", "môn")
+		assertThat(List.copyOf(index.search("hon").keySet()).subList(0, 3)).containsExactlyInAnyOrder(1, 2, 7);
+		assertThat(index.search("hong mo")).containsOnlyKeys(7);
+		assertThat(index.search("hong sen")).isEmpty();
+		assertThat(index.search("  ")).isEmpty();
+	}
+
+	@Test
+	@DisplayName("Small typos still match, ranked below exact matches")
+	public void testFuzzyMatching() {
+		assertThat(index.search("huogn")).containsOnlyKeys(6);
+		assertThat(index.search("hoong")).containsKeys(1, 2, 7);
+		assertThat(index.search("tulip")).isEmpty();
+
+		// "dao" is exact for product 3; "dai" is one edit away from it
+		assertThat(index.search("dai").get(3)).isLessThan(index.search("dao").get(3));
+	}
+
+	@Test
+	@DisplayName("Name matches rank above category matches, exact above prefix")
+	public void testRanking() {
+		// Product 5 is named "Lan...", product 4 only sits in the "Hoa Lan" category
+		assertThat(index.search("lan").keySet()).containsExactly(5, 4);
+
+		// "ho" is the whole "Hồ" of product 5, only a prefix of "hoa" and "hong"
+		assertThat(index.search("ho").get(5)).isGreaterThan(index.search("ho").get(1));
+	}
+
+	@Test
+	@DisplayName("Products are re-indexed and removed one at a time")
+	public void testIncrementalUpdates() {
+		assertThat(index.search("tulip")).isEmpty();
+
+		index.index(product(6, "Tulip Hà Lan", null));
+		assertThat(index.search("tulip")).containsOnlyKeys(6);
+		assertThat(index.search("huong duong")).doesNotContainKey(6);
+
+		index.remove(6);
+		assertThat(index.search("tulip")).isEmpty();
+		assertThat(index.matchingIds("hong")).containsExactlyInAnyOrder(1, 2, 7);
+	}
+
+	private static Category category(String id, String name) {
+		Category category = new Category();
+		category.setId(id);
+		category.setName(name);
+		return category;
+	}
+
+	private static Product product(Integer id, String name, Category category) {
+		Product product = new Product();
+		product.setId(id);
+		product.setName(name);
+		product.setCategory(category);
+		return product;
+	}
+}
@@ -0,0 +1,170 @@
+package poly.edu;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import poly.edu.models.entities.Category;
+import poly.edu.models.entities.Product;
+import poly.edu.models.repositories.CategoryRepository;
+import poly.edu.models.repositories.ProductRepository;
+import poly.edu.models.services.BestSellerRanking;
+import poly.edu.models.services.CatalogChangedEvent;
+import poly.edu.models.services.ProductSalesEvent;
+import poly.edu.models.services.ProductSuggestIndex;
+import poly.edu.models.services.ProductSuggestIndex.Suggestion;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Search box autocomplete: prefix lookups ranked by quantity sold
+ */
+@DisplayName("Product Suggest Index Tests")
+public class ProductSuggestIndexTests {
+
+	private ProductSuggestIndex index;
+
+	private ProductRepository productRepository;
+
+	@BeforeEach
+	public void setup() {
+		Category wedding = category("HC", "Hoa Cưới");
+		Category birthday = category("HS", "Hoa Sinh Nhật");
+		productRepository = mock(ProductRepository.class);
+		when(productRepository.findAll()).thenReturn(List.of(
+				product(1, "Hoa Hồng Đỏ", wedding, true),
+				product(2, "Hoa Hồng Trắng", wedding, true),
+				product(3, "Hoa Hướng Dương", birthday, true),
+				product(4, "Hoa Hồng Xanh", birthday, false),
+				product(5, "Giỏ Hoa Cúc", birthday, true)));
+		CategoryRepository categoryRepository = mock(CategoryRepository.class);
+		when(categoryRepository.findAll()).thenReturn(List.of(wedding, birthday));
+		BestSellerRanking ranking = mock(BestSellerRanking.class);
+		when(ranking.sold(anyInt(), any())).thenReturn(0L);
+		when(ranking.sold(1, BestSellerRanking.Window.ALL)).thenReturn(50L);
+		when(ranking.sold(2, BestSellerRanking.Window.ALL)).thenReturn(5L);
+		when(ranking.sold(3, BestSellerRanking.Window.ALL)).thenReturn(20L);
+		when(ranking.sold(4, BestSellerRanking.Window.ALL)).thenReturn(100L);
+
+		index = new ProductSuggestIndex();
+		ReflectionTestUtils.setField(index, "productRepository", productRepository);
+		ReflectionTestUtils.setField(index, "categoryRepository", categoryRepository);
+		ReflectionTestUtils.setField(index, "bestSellerRanking", ranking);
+	}
+
+	@AfterEach
+	public void cleanup() {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	@DisplayName("Suggestions for a prefix come best seller first")
+	public void testPrefixRanking() {
+		assertThat(keys(index.suggest("hoa h", 10))).containsExactly("p:1", "p:3", "p:2");
+		assertThat(keys(index.suggest("Hoa Hồng", 10))).containsExactly("p:1", "p:2");
+		assertThat(keys(index.suggest("hoa hong t", 10))).containsExactly("p:2");
+	}
+
+	@Test
+	@DisplayName("Any word of a name can start a suggestion, accents optional")
+	public void testWordStarts() {
+		assertThat(keys(index.suggest("trang", 10))).containsExactly("p:2");
+		assertThat(keys(index.suggest("cuo", 10))).containsExactly("c:HC");
+		assertThat(keys(index.suggest("CÚC", 10))).containsExactly("p:5");
+		assertThat(index.suggest("tulip", 10)).isEmpty();
+		assertThat(index.suggest("  ", 10)).isEmpty();
+	}
+
+	@Test
+	@DisplayName("Categories weigh what their products sold; unavailable products are left out")
+	public void testCategoriesAndUnavailableProducts() {
+		// Wedding: 50 + 5; birthday: 20 + 100 (the unavailable product still sold)
+		assertThat(index.suggest("hoa", 10)).extracting(Suggestion::key, Suggestion::weight)
+				.startsWith(tuple("c:HS", 120L), tuple("c:HC", 55L));
+		assertThat(keys(index.suggest("xanh", 10))).isEmpty();
+		assertThat(index.suggest("hoa", 2)).hasSize(2);
+		assertThat(index.suggest("hoa", 100)).hasSizeLessThanOrEqualTo(ProductSuggestIndex.MAX_SUGGESTIONS);
+	}
+
+	@Test
+	@DisplayName("Sales re-rank products and their categories without a rebuild")
+	public void testSalesMoveWeights() {
+		assertThat(keys(index.suggest("hoa hong", 10))).containsExactly("p:1", "p:2");
+
+		index.onSales(new ProductSalesEvent(LocalDate.now(), Map.of(2, 60)));
+		assertThat(keys(index.suggest("hoa hong", 10))).containsExactly("p:2", "p:1");
+		assertThat(weight(index.suggest("cuoi", 10), "c:HC")).isEqualTo(115L);
+
+		// A cancelled order gives the quantity back
+		index.onSales(new ProductSalesEvent(LocalDate.now(), Map.of(2, -60)));
+		assertThat(keys(index.suggest("hoa hong", 10))).containsExactly("p:1", "p:2");
+		assertThat(weight(index.suggest("cuoi", 10), "c:HC")).isEqualTo(55L);
+	}
+
+	@Test
+	@DisplayName("A renamed or moved product is re-indexed on its own")
+	public void testProductChanged() {
+		index.suggest("hoa", 10);
+
+		Category birthday = category("HS", "Hoa Sinh Nhật");
+		when(productRepository.findById(1)).thenReturn(Optional.of(product(1, "Lan Hồ Điệp", birthday, true)));
+		index.onCatalogChanged(CatalogChangedEvent.product(1));
+
+		assertThat(keys(index.suggest("hoa hong", 10))).containsExactly("p:2");
+		assertThat(keys(index.suggest("lan", 10))).containsExactly("p:1");
+		assertThat(weight(index.suggest("cuoi", 10), "c:HC")).isEqualTo(5L);
+		assertThat(weight(index.suggest("sinh", 10), "c:HS")).isEqualTo(170L);
+	}
+
+	@Test
+	@DisplayName("Links are built under the application's context path")
+	public void testUrls() {
+		assertThat(index.suggest("trang", 1).get(0).url()).isEqualTo("/products/2");
+
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setContextPath("/shop");
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+		assertThat(index.suggest("trang", 1).get(0).url()).isEqualTo("/shop/products/2");
+		assertThat(index.suggest("cuoi", 1).get(0).url()).isEqualTo("/shop/products?categoryId=HC");
+	}
+
+	private static List<String> keys(List<Suggestion> suggestions) {
+		return suggestions.stream().map(Suggestion::key).toList();
+	}
+
+	private static long weight(List<Suggestion> suggestions, String key) {
+		return suggestions.stream().filter(s -> s.key().equals(key)).findFirst().orElseThrow().weight();
+	}
+
+	private static Category category(String id, String name) {
+		Category category = new Category();
+		category.setId(id);
+		category.setName(name);
+		return category;
+	}
+
+	private static Product product(Integer id, String name, Category category, boolean available) {
+		Product product = new Product();
+		product.setId(id);
+		product.setName(name);
+		product.setCategory(category);
+		product.setAvailable(available);
+		return product;
+	}
+}
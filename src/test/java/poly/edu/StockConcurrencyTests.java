@@ -0,0 +1,221 @@
+package poly.edu;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MSSQLServerContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import poly.edu.models.cart.Cart;
+import poly.edu.models.entities.Account;
+import poly.edu.models.entities.Category;
+import poly.edu.models.entities.Product;
+import poly.edu.models.services.AccountServices;
+import poly.edu.models.services.CategoryServices;
+import poly.edu.models.services.OrderServices;
+import poly.edu.models.services.ProductServices;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Many customers checking out the last units of the same products at once.
+ *
+ * Runs against SQL Server in a container, created from AsmJava5.sql: the row
+ * locks taken by the conditional UPDATE are what is under test, so an embedded
+ * database would prove nothing. Skipped where Docker is not available.
+ *
+ * Not @Transactional: every checkout commits in its own thread, as it would in
+ * production, so the data is created and removed by hand.
+ */
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+public class StockConcurrencyTests {
+
+	@Container
+	private static final MSSQLServerContainer<?> sqlServer = new MSSQLServerContainer<>(
+			"mcr.microsoft.com/mssql/server:2022-latest").acceptLicense();
+
+	private static final int STOCK = 50;
+
+	private static final int CHECKOUTS = 300;
+
+	private static final int THREADS = 64;
+
+	@Autowired
+	private OrderServices orderServices;
+
+	@Autowired
+	private ProductServices productServices;
+
+	@Autowired
+	private CategoryServices categoryServices;
+
+	@Autowired
+	private AccountServices accountServices;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private Account account;
+	private Product first;
+	private Product second;
+
+	@DynamicPropertySource
+	static void datasource(DynamicPropertyRegistry registry) throws Exception {
+		createDatabase();
+		registry.add("spring.datasource.url", () -> sqlServer.getJdbcUrl() + ";databaseName=AsmJava5");
+		registry.add("spring.datasource.username", sqlServer::getUsername);
+		registry.add("spring.datasource.password", sqlServer::getPassword);
+	}
+
+	// The script creates the AsmJava5 database itself; GO separates its batches
+	private static void createDatabase() throws Exception {
+		String script = Files.readString(Path.of("AsmJava5.sql"));
+		try (Connection connection = sqlServer.createConnection("");
+				Statement statement = connection.createStatement()) {
+			for (String batch : script.split("(?m)^\\s*GO\\s*$")) {
+				if (!batch.isBlank()) {
+					statement.execute(batch);
+				}
+			}
+		}
+	}
+
+	@BeforeEach
+	public void setup() {
+		Category category = new Category();
+		category.setId("STCK");
+		category.setName("Stock Test Category");
+		categoryServices.save(category);
+
+		first = newProduct("Stock Test Product 1", category);
+		second = newProduct("Stock Test Product 2", category);
+
+		account = new Account();
+		account.setUsername("stocktest");
+		account.setPassword("123");
+		account.setFullname("Stock Test");
+		account.setEmail("stocktest@example.com");
+		accountServices.save(account);
+	}
+
+	@AfterEach
+	public void cleanup() {
+		jdbcTemplate.update("DELETE FROM OrderDetails WHERE OrderId IN (SELECT Id FROM Orders WHERE Username = ?)",
+				account.getUsername());
+		jdbcTemplate.update("DELETE FROM Orders WHERE Username = ?", account.getUsername());
+		jdbcTemplate.update("DELETE FROM ProductSales WHERE ProductId IN (?, ?)", first.getId(), second.getId());
+		jdbcTemplate.update("DELETE FROM Products WHERE Id IN (?, ?)", first.getId(), second.getId());
+		jdbcTemplate.update("DELETE FROM Categories WHERE Id = ?", "STCK");
+		jdbcTemplate.update("DELETE FROM Accounts WHERE Username = ?", account.getUsername());
+	}
+
+	@Test
+	public void testParallelCheckoutsNeverOversell() throws Exception {
+		List<Boolean> results = checkoutInParallel(i -> {
+			Cart cart = new Cart();
+			cart.add(first.getId(), 1, first.getPrice());
+			return cart;
+		});
+
+		assertThat(results.stream().filter(placed -> placed).count()).isEqualTo(STOCK);
+		assertThat(amountOf(first)).isZero();
+		assertThat(soldOf(first)).isEqualTo(STOCK);
+	}
+
+	@Test
+	public void testParallelCheckoutsOfSeveralProductsTakeAllOrNothing() throws Exception {
+		// Half the carts list the products the other way round: locks are still
+		// taken in the same order, so no checkout deadlocks
+		List<Boolean> results = checkoutInParallel(i -> {
+			Product a = i % 2 == 0 ? first : second;
+			Product b = i % 2 == 0 ? second : first;
+			Cart cart = new Cart();
+			cart.add(a.getId(), 1, a.getPrice());
+			cart.add(b.getId(), 1, b.getPrice());
+			return cart;
+		});
+
+		assertThat(results.stream().filter(placed -> placed).count()).isEqualTo(STOCK);
+		assertThat(amountOf(first)).isZero();
+		assertThat(amountOf(second)).isZero();
+		// A refused checkout leaves no order and takes no stock
+		assertThat(soldOf(first)).isEqualTo(STOCK);
+		assertThat(soldOf(second)).isEqualTo(STOCK);
+		assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Orders WHERE Username = ?", Integer.class,
+				account.getUsername())).isEqualTo(STOCK);
+	}
+
+	private interface CartFactory {
+		Cart cart(int checkout);
+	}
+
+	// true for each placed order, false for each refused for lack of stock
+	private List<Boolean> checkoutInParallel(CartFactory carts) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Boolean>> futures = new ArrayList<>();
+		try {
+			for (int i = 0; i < CHECKOUTS; i++) {
+				Cart cart = carts.cart(i);
+				futures.add(executor.submit(() -> {
+					start.await();
+					try {
+						orderServices.placeOrder(account, "1 Test Street", cart);
+						return true;
+					} catch (RuntimeException e) {
+						assertThat(e.getMessage()).contains("Insufficient stock");
+						return false;
+					}
+				}));
+			}
+			start.countDown();
+			List<Boolean> results = new ArrayList<>();
+			for (Future<Boolean> future : futures) {
+				results.add(future.get(60, TimeUnit.SECONDS));
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Product newProduct(String name, Category category) {
+		Product product = new Product();
+		product.setName(name);
+		product.setPrice(100.0);
+		product.setAmount(STOCK);
+		product.setImage("test.jpg");
+		product.setCategory(category);
+		productServices.save(product);
+		return product;
+	}
+
+	// Read from the table, past any cached entity
+	private int amountOf(Product product) {
+		return jdbcTemplate.queryForObject("SELECT Amount FROM Products WHERE Id = ?", Integer.class, product.getId());
+	}
+
+	private int soldOf(Product product) {
+		return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(Quantity), 0) FROM OrderDetails WHERE ProductId = ?",
+				Integer.class, product.getId());
+	}
+}
@@ -0,0 +1,97 @@
+package poly.edu.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.serializer.support.SerializationFailedException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+
+import poly.edu.models.cart.Cart;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Session attributes survive a trip through the bytes stored in SQL Server, in
+ * each of the three formats
+ */
+@DisplayName("Session Attribute Codec Tests")
+public class SessionAttributeCodecTests {
+
+	private final SessionAttributeCodec codec = new SessionAttributeCodec(getClass().getClassLoader());
+
+	@Test
+	@DisplayName("A cart is stored as 16 bytes a line")
+	public void testCartRoundTrip() {
+		Cart cart = new Cart();
+		cart.add(7, 2, 150000.0);
+		cart.add(42, 1, 89999.5);
+		cart.add(3, 10, 0.0);
+
+		byte[] bytes = codec.encode(cart);
+		assertThat(bytes[0]).isEqualTo((byte) 2);
+		assertThat(bytes).hasSize(1 + 2 + 3 * 16);
+
+		Cart decoded = (Cart) codec.decode(bytes);
+		assertThat(decoded.size()).isEqualTo(3);
+		for (int i = 0; i < cart.size(); i++) {
+			assertThat(decoded.productId(i)).isEqualTo(cart.productId(i));
+			assertThat(decoded.quantity(i)).isEqualTo(cart.quantity(i));
+			assertThat(decoded.price(i)).isEqualTo(cart.price(i));
+		}
+	}
+
+	@Test
+	@DisplayName("Empty and full carts")
+	public void testCartSizes() {
+		assertThat(((Cart) codec.decode(codec.encode(new Cart()))).isEmpty()).isTrue();
+
+		Cart full = new Cart();
+		for (int i = 1; i <= Cart.MAX_LINES; i++) {
+			full.add(i, i, i * 1000.0);
+		}
+		Cart decoded = (Cart) codec.decode(codec.encode(full));
+		assertThat(decoded.size()).isEqualTo(Cart.MAX_LINES);
+		assertThat(decoded.getItemCount()).isEqualTo(full.getItemCount());
+		assertThat(decoded.getTotal()).isEqualTo(full.getTotal());
+	}
+
+	@Test
+	@DisplayName("Small values are Java-serialized as they are")
+	public void testSmallValue() {
+		byte[] bytes = codec.encode("Đã thêm vào giỏ hàng");
+		assertThat(bytes[0]).isEqualTo((byte) 0);
+		assertThat(codec.decode(bytes)).isEqualTo("Đã thêm vào giỏ hàng");
+	}
+
+	@Test
+	@DisplayName("Large values, such as the security context, are deflated")
+	public void testDeflatedValue() {
+		SecurityContext context = new SecurityContextImpl(UsernamePasswordAuthenticationToken.authenticated(
+				"admin", null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+		byte[] bytes = codec.encode(context);
+		assertThat(bytes[0]).isEqualTo((byte) 1);
+		assertThat(codec.decode(bytes)).isEqualTo(context);
+
+		List<String> filters = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			filters.add("keyword=hoa hồng&status=Pending&page=" + i);
+		}
+		bytes = codec.encode(filters);
+		assertThat(bytes[0]).isEqualTo((byte) 1);
+		assertThat(bytes.length).isLessThan(200 * 20);
+		assertThat(codec.decode(bytes)).isEqualTo(filters);
+	}
+
+	@Test
+	@DisplayName("Unknown formats are refused")
+	public void testUnknownFormat() {
+		assertThatThrownBy(() -> codec.decode(new byte[] { 9, 0, 0 }))
+				.isInstanceOf(SerializationFailedException.class);
+	}
+}
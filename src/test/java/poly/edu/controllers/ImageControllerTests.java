@@ -0,0 +1,120 @@
+package poly.edu.controllers;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import poly.edu.models.services.ImageManifest.Entry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Conditional and Range headers of image requests
+ */
+@DisplayName("Image Controller Tests")
+public class ImageControllerTests {
+
+	private static final String ETAG = "\"3f2a9c\"";
+
+	// Sun, 03 Mar 2024 10:00:00 GMT, with milliseconds the header cannot carry
+	private static final long LAST_MODIFIED = 1709460000_000L + 456;
+
+	private static final Entry ENTRY = entry(1000);
+
+	@Test
+	@DisplayName("If-None-Match matches the entity tag, weakly, in a list or as *")
+	public void testIfNoneMatch() {
+		assertThat(ImageController.notModified(request(HttpHeaders.IF_NONE_MATCH, ETAG), ENTRY)).isTrue();
+		assertThat(ImageController.notModified(request(HttpHeaders.IF_NONE_MATCH, "W/" + ETAG), ENTRY)).isTrue();
+		assertThat(ImageController.notModified(request(HttpHeaders.IF_NONE_MATCH, "\"old\", " + ETAG), ENTRY))
+				.isTrue();
+		assertThat(ImageController.notModified(request(HttpHeaders.IF_NONE_MATCH, "*"), ENTRY)).isTrue();
+		assertThat(ImageController.notModified(request(HttpHeaders.IF_NONE_MATCH, "\"old\""), ENTRY)).isFalse();
+		assertThat(ImageController.notModified(request(HttpHeaders.IF_NONE_MATCH, "3f2a9c"), ENTRY)).isFalse();
+	}
+
+	@Test
+	@DisplayName("If-Modified-Since is compared to the second, and ignored when a tag was sent")
+	public void testIfModifiedSince() {
+		assertThat(ImageController.notModified(new MockHttpServletRequest(), ENTRY)).isFalse();
+
+		MockHttpServletRequest same = new MockHttpServletRequest();
+		same.addHeader(HttpHeaders.IF_MODIFIED_SINCE, "Sun, 03 Mar 2024 10:00:00 GMT");
+		assertThat(ImageController.notModified(same, ENTRY)).isTrue();
+
+		MockHttpServletRequest earlier = new MockHttpServletRequest();
+		earlier.addHeader(HttpHeaders.IF_MODIFIED_SINCE, "Sun, 03 Mar 2024 09:59:59 GMT");
+		assertThat(ImageController.notModified(earlier, ENTRY)).isFalse();
+
+		MockHttpServletRequest staleTag = new MockHttpServletRequest();
+		staleTag.addHeader(HttpHeaders.IF_NONE_MATCH, "\"old\"");
+		staleTag.addHeader(HttpHeaders.IF_MODIFIED_SINCE, "Sun, 03 Mar 2024 10:00:00 GMT");
+		assertThat(ImageController.notModified(staleTag, ENTRY)).isFalse();
+
+		MockHttpServletRequest malformed = new MockHttpServletRequest();
+		malformed.addHeader(HttpHeaders.IF_MODIFIED_SINCE, "yesterday");
+		assertThat(ImageController.notModified(malformed, ENTRY)).isFalse();
+	}
+
+	@Test
+	@DisplayName("Single byte ranges: bounded, open-ended and suffix")
+	public void testRanges() {
+		assertThat(range("bytes=0-99")).containsExactly(0, 99);
+		assertThat(range("bytes=500-")).containsExactly(500, 999);
+		assertThat(range("bytes= 990 - 2000")).containsExactly(990, 999);
+		assertThat(range("bytes=-100")).containsExactly(900, 999);
+		assertThat(range("bytes=-2000")).containsExactly(0, 999);
+		assertThat(range("bytes=999-999")).containsExactly(999, 999);
+	}
+
+	@Test
+	@DisplayName("Ranges past the end are unsatisfiable")
+	public void testUnsatisfiableRanges() {
+		assertThat(range("bytes=1000-")).isEmpty();
+		assertThat(range("bytes=1000-1200")).isEmpty();
+		assertThat(range("bytes=-0")).isEmpty();
+		assertThat(ImageController.range(request(HttpHeaders.RANGE, "bytes=0-"), entry(0))).isEmpty();
+		assertThat(ImageController.range(request(HttpHeaders.RANGE, "bytes=-5"), entry(0))).isEmpty();
+	}
+
+	@Test
+	@DisplayName("Missing, multiple and malformed ranges send the whole file")
+	public void testIgnoredRanges() {
+		assertThat(ImageController.range(new MockHttpServletRequest(), ENTRY)).isNull();
+		for (String header : new String[] { "bytes=0-1,5-6", "bytes=abc", "bytes=5", "bytes=9-5", "bytes=-",
+				"items=0-1", "bytes=-5-6" }) {
+			assertThat(range(header)).as(header).isNull();
+		}
+	}
+
+	@Test
+	@DisplayName("If-Range applies the range only to the same version")
+	public void testIfRange() {
+		MockHttpServletRequest current = request(HttpHeaders.RANGE, "bytes=0-99");
+		current.addHeader(HttpHeaders.IF_RANGE, ETAG);
+		assertThat(ImageController.range(current, ENTRY)).containsExactly(0, 99);
+
+		MockHttpServletRequest stale = request(HttpHeaders.RANGE, "bytes=0-99");
+		stale.addHeader(HttpHeaders.IF_RANGE, "\"old\"");
+		assertThat(ImageController.range(stale, ENTRY)).isNull();
+	}
+
+	private static long[] range(String header) {
+		return ImageController.range(request(HttpHeaders.RANGE, header), ENTRY);
+	}
+
+	private static MockHttpServletRequest request(String header, String value) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.addHeader(header, value);
+		return request;
+	}
+
+	private static Entry entry(long length) {
+		return new Entry(Path.of("uploads/products/3f/2a/3f2a9c.jpg"), length, LAST_MODIFIED, ETAG,
+				MediaType.IMAGE_JPEG, true, true);
+	}
+}
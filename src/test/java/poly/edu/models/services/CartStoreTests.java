@@ -0,0 +1,161 @@
+package poly.edu.models.services;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import poly.edu.models.cart.Cart;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Merging the cart filled before logging in with the saved one
+ */
+@DisplayName("Cart Store Tests")
+public class CartStoreTests {
+
+	private CartStore store;
+
+	// Rows of the Carts / CartItems join for "alice": UpdatedAt, ProductId, Quantity, Price
+	private final List<Object[]> stored = new ArrayList<>();
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+		doAnswer(invocation -> {
+			RowCallbackHandler handler = invocation.getArgument(1);
+			for (Object[] row : stored) {
+				handler.processRow(resultSet(row));
+			}
+			return null;
+		}).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+		store = new CartStore();
+		store.jdbcTemplate = jdbcTemplate;
+		store.cacheSize = 100;
+		store.cacheTtl = Duration.ofMinutes(5);
+		store.init();
+	}
+
+	@Test
+	@DisplayName("A product in both carts keeps the larger quantity and the saved price")
+	public void testCartMerge() {
+		Cart saved = cart(1, 2, 100.0, 2, 5, 200.0);
+		saved.merge(cart(2, 3, 250.0, 3, 1, 300.0));
+
+		assertThat(lines(saved)).containsExactly("1x2@100.0", "2x5@200.0", "3x1@300.0");
+
+		// Merging again changes nothing
+		saved.merge(cart(2, 3, 250.0, 3, 1, 300.0));
+		assertThat(lines(saved)).containsExactly("1x2@100.0", "2x5@200.0", "3x1@300.0");
+	}
+
+	@Test
+	@DisplayName("New lines beyond the cart limit are dropped")
+	public void testCartMergeLimit() {
+		Cart full = new Cart();
+		for (int i = 1; i <= Cart.MAX_LINES; i++) {
+			full.add(i, 1, 10.0);
+		}
+		full.merge(cart(1, 4, 10.0, 999, 1, 10.0));
+
+		assertThat(full.size()).isEqualTo(Cart.MAX_LINES);
+		assertThat(full.quantityOf(1)).isEqualTo(4);
+		assertThat(full.quantityOf(999)).isZero();
+	}
+
+	@Test
+	@DisplayName("Logging in with nothing saved keeps the session cart, to be written")
+	public void testMergeIntoNothing() {
+		Cart merged = store.merge("alice", cart(7, 2, 150000.0));
+
+		assertThat(lines(merged)).containsExactly("7x2@150000.0");
+		assertThat(lines(store.find("alice"))).containsExactly("7x2@150000.0");
+		assertThat(store.statistics()).containsEntry("pending", 1);
+	}
+
+	@Test
+	@DisplayName("The saved cart is read from the table at login, not from a stale cache")
+	public void testMergeReadsTable() {
+		stored.add(new Object[] { LocalDateTime.now().minusDays(1), 1, 1, 100.0 });
+		assertThat(lines(store.find("alice"))).containsExactly("1x1@100.0");
+
+		// Another node saved a newer cart meanwhile
+		stored.clear();
+		stored.add(new Object[] { LocalDateTime.now().minusMinutes(1), 1, 3, 100.0 });
+		stored.add(new Object[] { LocalDateTime.now().minusMinutes(1), 2, 1, 200.0 });
+
+		assertThat(lines(store.merge("alice", cart(2, 2, 200.0)))).containsExactly("1x3@100.0", "2x2@200.0");
+	}
+
+	@Test
+	@DisplayName("Logging in twice on the same session does not double quantities")
+	public void testMergeTwice() {
+		stored.add(new Object[] { LocalDateTime.now().minusDays(1), 1, 1, 100.0 });
+		Cart session = cart(1, 2, 100.0, 2, 1, 200.0);
+
+		store.merge("alice", session);
+		// Not flushed yet: the table still has the old cart, this node's pending one is newer
+		Cart again = store.merge("alice", session);
+
+		assertThat(lines(again)).containsExactly("1x2@100.0", "2x1@200.0");
+	}
+
+	@Test
+	@DisplayName("A newer cart in the table wins over an older pending one")
+	public void testStoredNewerThanPending() {
+		store.save("alice", cart(5, 9, 50.0));
+		stored.add(new Object[] { LocalDateTime.now().plusMinutes(1), 6, 1, 60.0 });
+
+		assertThat(lines(store.merge("alice", null))).containsExactly("6x1@60.0");
+	}
+
+	@Test
+	@DisplayName("An emptied cart stored after the pending one stays empty")
+	public void testStoredEmptyCart() {
+		store.save("alice", cart(5, 9, 50.0));
+		stored.add(new Object[] { LocalDateTime.now().plusMinutes(1), null, null, null });
+
+		assertThat(store.merge("alice", null).isEmpty()).isTrue();
+	}
+
+	private static Cart cart(Object... lines) {
+		Cart cart = new Cart();
+		for (int i = 0; i < lines.length; i += 3) {
+			cart.add((Integer) lines[i], (Integer) lines[i + 1], (Double) lines[i + 2]);
+		}
+		return cart;
+	}
+
+	private static List<String> lines(Cart cart) {
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < cart.size(); i++) {
+			lines.add(cart.productId(i) + "x" + cart.quantity(i) + "@" + cart.price(i));
+		}
+		return lines;
+	}
+
+	private static ResultSet resultSet(Object[] row) throws SQLException {
+		ResultSet rs = mock(ResultSet.class);
+		when(rs.getObject("UpdatedAt", LocalDateTime.class)).thenReturn((LocalDateTime) row[0]);
+		when(rs.getInt("ProductId")).thenReturn(row[1] == null ? 0 : (Integer) row[1]);
+		when(rs.wasNull()).thenReturn(row[1] == null);
+		when(rs.getInt("Quantity")).thenReturn(row[2] == null ? 0 : (Integer) row[2]);
+		when(rs.getDouble("Price")).thenReturn(row[3] == null ? 0 : (Double) row[3]);
+		return rs;
+	}
+}
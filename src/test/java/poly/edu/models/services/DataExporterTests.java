@@ -0,0 +1,37 @@
+package poly.edu.models.services;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CSV cells of an export, as a spreadsheet will open them
+ */
+@DisplayName("Data Exporter Tests")
+public class DataExporterTests {
+
+	@Test
+	@DisplayName("Text a spreadsheet would evaluate is prefixed with a quote")
+	public void testFormulaInjection() {
+		assertThat(DataExporter.csv("=HYPERLINK(\"http://x\")")).isEqualTo("\"'=HYPERLINK(\"\"http://x\"\")\"");
+		assertThat(DataExporter.csv("+84 912 345 678")).isEqualTo("'+84 912 345 678");
+		assertThat(DataExporter.csv("-1+1")).isEqualTo("'-1+1");
+		assertThat(DataExporter.csv("@SUM(A1)")).isEqualTo("'@SUM(A1)");
+		assertThat(DataExporter.csv("\t=1")).isEqualTo("'\t=1");
+	}
+
+	@Test
+	@DisplayName("Ordinary values are written as they are, quoted only when needed")
+	public void testPlainCells() {
+		assertThat(DataExporter.csv("Nguyễn Văn A")).isEqualTo("Nguyễn Văn A");
+		assertThat(DataExporter.csv("12 Lê Lợi, Q.1")).isEqualTo("\"12 Lê Lợi, Q.1\"");
+		assertThat(DataExporter.csv(-150000)).isEqualTo("-150000");
+		assertThat(DataExporter.csv(1500000.0)).isEqualTo("1500000");
+		assertThat(DataExporter.csv(LocalDate.of(2024, 3, 3))).isEqualTo("2024-03-03");
+		assertThat(DataExporter.csv("")).isEmpty();
+		assertThat(DataExporter.csv(null)).isEmpty();
+	}
+}
@@ -0,0 +1,55 @@
+package poly.edu.models.services;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Number cells of an import, read in the file's locale
+ */
+@DisplayName("Product Importer Tests")
+public class ProductImporterTests {
+
+	private static final Locale VIETNAMESE = Locale.forLanguageTag("vi-VN");
+
+	@Test
+	@DisplayName("Vietnamese files group thousands with dots and use a decimal comma")
+	public void testVietnameseNumbers() {
+		assertThat(ProductImporter.parseNumber("150.000", VIETNAMESE)).isEqualByComparingTo("150000");
+		assertThat(ProductImporter.parseNumber("1.500.000,50", VIETNAMESE)).isEqualByComparingTo("1500000.50");
+		assertThat(ProductImporter.parseNumber("150000", VIETNAMESE)).isEqualByComparingTo("150000");
+		assertThat(ProductImporter.parseNumber("2,7", VIETNAMESE)).isEqualByComparingTo("2.7");
+		assertThat(ProductImporter.parseNumber("-5", VIETNAMESE)).isEqualByComparingTo("-5");
+	}
+
+	@Test
+	@DisplayName("Spreadsheet cells are formatted without a locale")
+	public void testRootNumbers() {
+		assertThat(ProductImporter.parseNumber("2.7", Locale.ROOT)).isEqualByComparingTo("2.7");
+		assertThat(ProductImporter.parseNumber("1,500", Locale.ROOT)).isEqualByComparingTo("1500");
+		assertThat(ProductImporter.parseNumber("150000", Locale.ROOT)).isEqualByComparingTo("150000");
+	}
+
+	@Test
+	@DisplayName("Ambiguous or malformed numbers are rejected, not guessed")
+	public void testRejectedNumbers() {
+		for (String text : new String[] { "2.7", "15.00", "1.50.000", "150.000.", "1,5,0", "abc", "", "1 500",
+				"+5" }) {
+			assertThatThrownBy(() -> ProductImporter.parseNumber(text, VIETNAMESE)).as(text)
+					.isInstanceOf(NumberFormatException.class);
+		}
+	}
+
+	@Test
+	@DisplayName("A fractional amount is not truncated")
+	public void testFractionalAmount() {
+		BigDecimal amount = ProductImporter.parseNumber("2,7", VIETNAMESE);
+		assertThatThrownBy(amount::intValueExact).isInstanceOf(ArithmeticException.class);
+		assertThat(ProductImporter.parseNumber("3,0", VIETNAMESE).intValueExact()).isEqualTo(3);
+	}
+}